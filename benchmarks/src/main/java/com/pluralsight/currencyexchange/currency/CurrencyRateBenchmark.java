@@ -0,0 +1,119 @@
+package com.pluralsight.currencyexchange.currency;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the currency rate hot path: rate calculation, conversion to gRPC messages,
+ * the GetAllCurrentRates snapshot (cached and recalculated) and its protobuf serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurrencyRateBenchmark {
+
+  private static final long EPOCH_SECOND = 1_700_000_000L;
+
+  private final SineRateProvider rateProvider = new SineRateProvider();
+  private CurrencyRateData rateData;
+  private String formattedTimestamp;
+  private CurrencyRateSnapshotEngine cachedEngine;
+  private CurrencyRateSnapshotEngine tickingEngine;
+  private CurrencyRateListResponse allRatesResponse;
+  private byte[] serializedAllRates;
+
+  @Setup
+  public void setup() {
+    rateData = new CurrencyRateData("EUR", new BigDecimal("0.9217"), LocalDateTime.now());
+    formattedTimestamp = "2023-11-14T22:13:20";
+    cachedEngine = new CurrencyRateSnapshotEngine(Clock.fixed(Instant.ofEpochSecond(EPOCH_SECOND), ZoneOffset.UTC), rateProvider);
+    tickingEngine = new CurrencyRateSnapshotEngine(new TickingClock(), rateProvider);
+    allRatesResponse = cachedEngine.current().allRatesResponse();
+    serializedAllRates = allRatesResponse.toByteArray();
+  }
+
+  @Benchmark
+  public BigDecimal calculateRate() {
+    return rateProvider.rate("EUR", EPOCH_SECOND);
+  }
+
+  @Benchmark
+  public CurrencyRate convertToGrpc() {
+    return CurrencyRateSnapshotEngine.convertToGrpc(rateData, formattedTimestamp);
+  }
+
+  /**
+   * What GetAllCurrentRates costs within a tick, when the snapshot is already calculated.
+   */
+  @Benchmark
+  public CurrencyRateListResponse getAllCurrentRates() {
+    return cachedEngine.current().allRatesResponse();
+  }
+
+  /**
+   * What GetAllCurrentRates costs on the first call of a tick, when all the rates are calculated.
+   */
+  @Benchmark
+  public CurrencyRateListResponse getAllCurrentRatesNewTick() {
+    return tickingEngine.current().allRatesResponse();
+  }
+
+  @Benchmark
+  public byte[] serializeAllRates() {
+    return allRatesResponse.toByteArray();
+  }
+
+  @Benchmark
+  public CurrencyRateListResponse parseAllRates() throws InvalidProtocolBufferException {
+    return CurrencyRateListResponse.parseFrom(serializedAllRates);
+  }
+
+  /**
+   * Clock moving one second forward every time the engine reads it, so every call starts a new tick.
+   */
+  static class TickingClock extends Clock {
+
+    private long millis = EPOCH_SECOND * 1_000;
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public long millis() {
+      millis += 1_000;
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+}
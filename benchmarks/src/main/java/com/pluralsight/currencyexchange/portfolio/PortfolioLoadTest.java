@@ -0,0 +1,226 @@
+package com.pluralsight.currencyexchange.portfolio;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load test of a running portfolio service: concurrent users, each on a virtual thread and signed in with its own session,
+ * load the portfolio page in a loop with a think time between pages. The number of users doubles every step, until the p99
+ * page latency exceeds {@value #P99_LIMIT_MILLIS} ms or more than 1% of the pages fail. The last step within these limits is
+ * the number of users the instance sustains. Users share the connections of one client, and keep their own cookies.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.pluralsight.currencyexchange.portfolio.PortfolioLoadTest [url] [max users]
+ * </pre>
+ */
+public class PortfolioLoadTest {
+
+  private static final int FIRST_STEP_USERS = 50;
+  private static final Duration STEP_DURATION = Duration.ofSeconds(20);
+  private static final Duration THINK_TIME = Duration.ofSeconds(1);
+  private static final long P99_LIMIT_MILLIS = 500;
+  private static final double MAX_ERROR_RATE = 0.01;
+  private static final String EMAIL = "john.doe@example.com";
+  private static final String PASSWORD = "password";
+  private static final String SESSION_COOKIE = "portfolio-session";
+  // Hidden field of the forms, checked against the CSRF cookie
+  private static final String CSRF_PARAMETER = "csrf-token";
+  private static final Pattern CSRF_INPUT = Pattern.compile("<input[^>]*name=\"" + CSRF_PARAMETER + "\"[^>]*>");
+  private static final Pattern VALUE = Pattern.compile("value=\"([^\"]*)\"");
+
+  private final URI baseUri;
+  private final HttpClient client;
+  private final List<VirtualUser> virtualUsers = new ArrayList<>();
+
+  PortfolioLoadTest(URI baseUri) {
+    this.baseUri = baseUri;
+    this.client = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(5))
+      .executor(Executors.newVirtualThreadPerTaskExecutor())
+      .build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    URI baseUri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+    int maxUsers = args.length > 1 ? Integer.parseInt(args[1]) : 25_600;
+
+    PortfolioLoadTest loadTest = new PortfolioLoadTest(baseUri);
+
+    int sustainedUsers = 0;
+    for (int users = FIRST_STEP_USERS; users <= maxUsers; users *= 2) {
+      Step step = loadTest.run(users);
+      System.out.println(step);
+      if (step.p99Millis() > P99_LIMIT_MILLIS || step.errorRate() > MAX_ERROR_RATE) {
+        break;
+      }
+      sustainedUsers = users;
+    }
+    System.out.println("Sustained concurrent users: " + sustainedUsers
+      + " (p99 under " + P99_LIMIT_MILLIS + " ms, under " + (int) (MAX_ERROR_RATE * 100) + "% errors)");
+  }
+
+  /**
+   * Signs in new users until there are {@code users}, before the step is measured.
+   */
+  void signIn(int users) throws InterruptedException {
+    List<VirtualUser> added = new ArrayList<>();
+    while (virtualUsers.size() + added.size() < users) {
+      added.add(new VirtualUser());
+    }
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      List<Future<?>> signIns = new ArrayList<>(added.size());
+      for (VirtualUser user : added) {
+        signIns.add(executor.submit(() -> {
+          user.signIn(EMAIL, PASSWORD);
+          return null;
+        }));
+      }
+      for (Future<?> signIn : signIns) {
+        try {
+          signIn.get();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Cannot sign in the users of the step", e.getCause());
+        }
+      }
+    }
+    virtualUsers.addAll(added);
+  }
+
+  /**
+   * Runs {@code users} concurrent users for a step, and measures the latency of their pages.
+   * A page without an ETag is not the portfolio page, the sign in page most likely, and counts as an error.
+   */
+  Step run(int users) throws InterruptedException {
+    signIn(users);
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicLong errors = new AtomicLong();
+    List<long[]> latencies = new ArrayList<>(users);
+    int[] counts = new int[users];
+    long start = System.nanoTime();
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < users; i++) {
+        int user = i;
+        VirtualUser virtualUser = virtualUsers.get(i);
+        long[] userLatencies = new long[(int) (STEP_DURATION.toMillis() / THINK_TIME.toMillis()) * 2 + 1];
+        latencies.add(userLatencies);
+        executor.execute(() -> {
+          while (running.get() && counts[user] < userLatencies.length) {
+            long requestStart = System.nanoTime();
+            try {
+              HttpResponse<Void> response = virtualUser.send(HttpRequest.newBuilder(baseUri.resolve("/portfolio")).timeout(Duration.ofSeconds(10)),
+                HttpResponse.BodyHandlers.discarding());
+              if (response.statusCode() != 200 || response.headers().firstValue("ETag").isEmpty()) {
+                errors.incrementAndGet();
+              }
+            } catch (IOException e) {
+              errors.incrementAndGet();
+            } catch (InterruptedException e) {
+              return;
+            }
+            userLatencies[counts[user]++] = System.nanoTime() - requestStart;
+            try {
+              Thread.sleep(THINK_TIME);
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+        });
+      }
+      Thread.sleep(STEP_DURATION);
+      running.set(false);
+    }
+
+    long elapsedNanos = System.nanoTime() - start;
+    int total = Arrays.stream(counts).sum();
+    long[] sorted = new long[total];
+    int position = 0;
+    for (int i = 0; i < users; i++) {
+      System.arraycopy(latencies.get(i), 0, sorted, position, counts[i]);
+      position += counts[i];
+    }
+    Arrays.sort(sorted);
+    return new Step(users, total, errors.get(), total * 1e9 / elapsedNanos, percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99));
+  }
+
+  private static long percentileMillis(long[] sorted, double percentile) {
+    return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1_000_000;
+  }
+
+  /**
+   * A user signed in with its own session: it keeps the cookies the portfolio sets, the session and the CSRF cookies.
+   */
+  private final class VirtualUser {
+
+    private final CookieManager cookies = new CookieManager();
+
+    /**
+     * Posts the sign in form with its CSRF token, and checks a session cookie is set.
+     */
+    void signIn(String email, String password) throws IOException, InterruptedException {
+      HttpResponse<String> form = send(HttpRequest.newBuilder(baseUri.resolve("/signin")), HttpResponse.BodyHandlers.ofString());
+      Matcher input = CSRF_INPUT.matcher(form.body());
+      Matcher token = input.find() ? VALUE.matcher(input.group()) : null;
+      if (form.statusCode() != 200 || token == null || !token.find()) {
+        throw new IllegalStateException("No CSRF token in the sign in form: HTTP " + form.statusCode());
+      }
+
+      String body = "email=" + encode(email) + "&password=" + encode(password) + "&" + CSRF_PARAMETER + "=" + encode(token.group(1));
+      HttpResponse<Void> response = send(HttpRequest.newBuilder(baseUri.resolve("/signin"))
+        .header("Content-Type", "application/x-www-form-urlencoded")
+        .POST(HttpRequest.BodyPublishers.ofString(body)), HttpResponse.BodyHandlers.discarding());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException("Cannot sign in: HTTP " + response.statusCode());
+      }
+      if (cookies.getCookieStore().getCookies().stream().noneMatch(cookie -> cookie.getName().equals(SESSION_COOKIE))) {
+        throw new IllegalStateException("Signed in without a " + SESSION_COOKIE + " cookie");
+      }
+    }
+
+    <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+      URI uri = request.build().uri();
+      List<String> cookieValues = cookies.get(uri, Map.of()).getOrDefault("Cookie", List.of());
+      if (!cookieValues.isEmpty()) {
+        request.header("Cookie", String.join("; ", cookieValues));
+      }
+      HttpResponse<T> response = client.send(request.build(), bodyHandler);
+      cookies.put(response.uri(), response.headers().map());
+      return response;
+    }
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  record Step(int users, int pages, long errors, double pagesPerSecond, long p50Millis, long p99Millis) {
+
+    double errorRate() {
+      return pages == 0 ? 1 : (double) errors / pages;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%6d users: %8.1f pages/s, p50 %5d ms, p99 %5d ms, %d errors / %d pages",
+        users, pagesPerSecond, p50Millis, p99Millis, errors, pages);
+    }
+  }
+}
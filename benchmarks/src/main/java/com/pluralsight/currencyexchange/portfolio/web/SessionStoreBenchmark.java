@@ -0,0 +1,83 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.portfolio.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the session store with {@value #ACTIVE_SESSIONS} active sessions, kept in memory or in signed cookies:
+ * cost of finding the session of a request and of signing in, from concurrent request threads.
+ * The retained heap per session is measured once per fork, after signing in every session, and printed with the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(8)
+public class SessionStoreBenchmark {
+
+  private static final int ACTIVE_SESSIONS = 100_000;
+  private static final User[] USERS = {
+    User.byEmail("john.doe@example.com"), User.byEmail("jane.smith@example.com"), User.byEmail("bob.johnson@example.com")
+  };
+
+  @Param({"memory", "signed-cookies"})
+  String mode;
+
+  private SessionStore sessions;
+  private String[] tokens;
+
+  @Setup
+  public void signIn() {
+    long before = usedHeap();
+    sessions = new SessionStore(Duration.ofMinutes(30), 2 * ACTIVE_SESSIONS, mode.equals("memory") ? null : "benchmark-secret",
+      Clock.systemUTC());
+    tokens = new String[ACTIVE_SESSIONS];
+    for (int i = 0; i < ACTIVE_SESSIONS; i++) {
+      tokens[i] = sessions.create(USERS[i % USERS.length]);
+    }
+    long retained = usedHeap() - before;
+    System.out.println();
+    System.out.println("Retained heap per session (" + mode + "): " + retained / ACTIVE_SESSIONS + " bytes, including the token");
+  }
+
+  @Benchmark
+  public SessionStore.Session findSession() {
+    return sessions.find(tokens[ThreadLocalRandom.current().nextInt(ACTIVE_SESSIONS)]);
+  }
+
+  @Benchmark
+  public String signInAndOut() {
+    // Signing out right away keeps the store at the same number of sessions
+    String token = sessions.create(USERS[ThreadLocalRandom.current().nextInt(USERS.length)]);
+    sessions.remove(token);
+    return token;
+  }
+
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,130 @@
+package com.pluralsight.currencyexchange.trade;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of trade executions journaled to disk, at high concurrency: {@value #CONCURRENCY} requests at once,
+ * executed by a pool of worker threads (the blocking model, sized like the Quarkus worker pool) or one virtual thread each.
+ * Throughput is reported in trades per second, the latency percentiles of the requests are printed after each run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TradeExecutionBenchmark {
+
+  private static final int CONCURRENCY = 10_000;
+  private static final int WORKER_THREADS = 200;
+  private static final int MAX_LATENCY_SAMPLES = 10_000_000;
+
+  @Param({"worker", "virtual"})
+  String threads;
+
+  private Path journalPath;
+  private TradeService tradeService;
+  private ExecutorService executor;
+  private long[] latencies;
+  private int latencyCount;
+  private boolean measuring;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    // One log line per trade would measure the console
+    Logger.getLogger("com.pluralsight.currencyexchange").setLevel(java.util.logging.Level.WARNING);
+
+    journalPath = Files.createTempFile("trades", ".journal");
+    tradeService = new TradeService();
+    tradeService.compactStore = true;
+    tradeService.tradeJournal = new TradeJournal(journalPath);
+    tradeService.idempotencyKeys = new IdempotencyKeys(100_000, Duration.ofHours(24), System::nanoTime);
+    tradeService.tradeEvents = new TradeEvents(256);
+    tradeService.tradeMetrics = new TradeMetrics(new SimpleMeterRegistry());
+    tradeService.recoverTrades();
+
+    executor = "virtual".equals(threads) ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(WORKER_THREADS);
+    latencies = new long[MAX_LATENCY_SAMPLES];
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration(IterationParams iteration) {
+    // Latencies of the warmup are left out of the percentiles
+    measuring = iteration.getType() == IterationType.MEASUREMENT;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    executor.close();
+    tradeService.tradeJournal.close();
+    Files.deleteIfExists(journalPath);
+
+    long[] sorted = Arrays.copyOf(latencies, latencyCount);
+    Arrays.sort(sorted);
+    System.out.println();
+    System.out.println("Request latency (" + threads + " threads): p50 " + percentileMillis(sorted, 0.50)
+      + " ms, p99 " + percentileMillis(sorted, 0.99) + " ms, max " + percentileMillis(sorted, 1.0) + " ms");
+  }
+
+  /**
+   * {@value #CONCURRENCY} trades received at once, each waiting until it is journaled.
+   */
+  @Benchmark
+  @OperationsPerInvocation(CONCURRENCY)
+  public void executeConcurrentTrades() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(CONCURRENCY);
+    long[] waveLatencies = new long[CONCURRENCY];
+    long received = System.nanoTime();
+    for (int i = 0; i < CONCURRENCY; i++) {
+      int request = i;
+      executor.execute(() -> {
+        tradeService.executeTrade(new Trade("user" + (request & 255), BigDecimal.valueOf(100), "EUR", BigDecimal.valueOf(0.92)));
+        waveLatencies[request] = System.nanoTime() - received;
+        done.countDown();
+      });
+    }
+    done.await();
+
+    if (!measuring) {
+      return;
+    }
+    int count = Math.min(CONCURRENCY, latencies.length - latencyCount);
+    System.arraycopy(waveLatencies, 0, latencies, latencyCount, count);
+    latencyCount += count;
+  }
+
+  private static String percentileMillis(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return "-";
+    }
+    long nanos = sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    return String.format("%.1f", nanos / 1_000_000.0);
+  }
+}
@@ -0,0 +1,96 @@
+package com.pluralsight.currencyexchange.trade;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the trade store, with trades kept as objects or in compact columns: memory footprint of the
+ * history, cost of appending trades (allocation reported by the GC profiler) and of reading a page of trades.
+ * The retained heap per trade is measured once per fork, after filling the store, and printed with the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TradeStoreBenchmark {
+
+  private static final int HISTORY_SIZE = 1_000_000;
+  private static final String[] CURRENCIES = {"AUD", "CAD", "CHF", "EUR", "GBP", "JPY"};
+  private static final LocalDateTime START = LocalDateTime.of(2025, 1, 31, 12, 0);
+
+  @Param({"true", "false"})
+  boolean compact;
+
+  private TradeStore history;
+  private Trade[] trades;
+  private TradeStore appendStore;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void fillHistory() {
+    trades = new Trade[1_024];
+    for (int i = 0; i < trades.length; i++) {
+      trades[i] = trade(i);
+    }
+
+    long before = usedHeap();
+    history = new TradeStore(compact);
+    for (int i = 0; i < HISTORY_SIZE; i++) {
+      // New objects for every trade, like trades parsed from JSON requests
+      history.append(trade(i));
+    }
+    long retained = usedHeap() - before;
+    System.out.println();
+    System.out.println("Retained heap per trade (compact=" + compact + "): " + retained / HISTORY_SIZE + " bytes");
+  }
+
+  @Setup(Level.Iteration)
+  public void newAppendStore() {
+    appendStore = new TradeStore(compact);
+    next = 0;
+  }
+
+  @Benchmark
+  public void appendTrade() {
+    appendStore.append(trades[next++ & (trades.length - 1)]);
+  }
+
+  @Benchmark
+  public TradePage latestTrades() {
+    return history.page("user", Long.MIN_VALUE, Long.MAX_VALUE, null, 50, true);
+  }
+
+  private static Trade trade(int i) {
+    BigDecimal usdAmount = BigDecimal.valueOf(10_000 + i % 90_000, 2);
+    BigDecimal exchangeRate = BigDecimal.valueOf(9_000 + i % 1_000, 4);
+    return new Trade("user", START.plusNanos(i * 1_000_123L), usdAmount, new String(CURRENCIES[i % CURRENCIES.length]),
+      usdAmount.multiply(exchangeRate).setScale(6, RoundingMode.HALF_UP), exchangeRate, "COMPLETED");
+  }
+
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,106 @@
+package com.pluralsight.currencyexchange.currency;
+
+/**
+ * Fixed-size ring buffer of OHLC candles for one currency at one resolution.
+ * Candles are updated incrementally as ticks arrive, so reading them never has to go back to the raw rates.
+ * Not thread-safe, {@link RateTimeSeries} guards it.
+ */
+class CandleSeries {
+
+  private final long resolutionSeconds;
+  private final long[] openEpochSeconds;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+  private int next;
+  private int size;
+
+  CandleSeries(long resolutionSeconds, int capacity) {
+    this.resolutionSeconds = resolutionSeconds;
+    this.openEpochSeconds = new long[capacity];
+    this.open = new double[capacity];
+    this.high = new double[capacity];
+    this.low = new double[capacity];
+    this.close = new double[capacity];
+  }
+
+  void update(long epochSecond, double rate) {
+    long openEpochSecond = epochSecond - Math.floorMod(epochSecond, resolutionSeconds);
+    if (size > 0) {
+      int last = physicalIndex(size - 1);
+      if (openEpochSeconds[last] == openEpochSecond) {
+        high[last] = Math.max(high[last], rate);
+        low[last] = Math.min(low[last], rate);
+        close[last] = rate;
+        return;
+      }
+      if (openEpochSeconds[last] > openEpochSecond) {
+        // Out of order tick, the candle it belongs to is already closed
+        return;
+      }
+    }
+    openEpochSeconds[next] = openEpochSecond;
+    open[next] = rate;
+    high[next] = rate;
+    low[next] = rate;
+    close[next] = rate;
+    next = (next + 1) % openEpochSeconds.length;
+    if (size < openEpochSeconds.length) {
+      size++;
+    }
+  }
+
+  /**
+   * Copies the candles opened between the two epoch seconds (both inclusive), oldest first.
+   */
+  Candles range(long fromEpochSecond, long toEpochSecond) {
+    long from = fromEpochSecond - Math.floorMod(fromEpochSecond, resolutionSeconds);
+    int first = countBefore(from, false);
+    int count = Math.max(0, countBefore(toEpochSecond, true) - first);
+
+    Candles candles = new Candles(new long[count], new double[count], new double[count], new double[count], new double[count]);
+    for (int i = 0; i < count; i++) {
+      int index = physicalIndex(first + i);
+      candles.openEpochSeconds()[i] = openEpochSeconds[index];
+      candles.open()[i] = open[index];
+      candles.high()[i] = high[index];
+      candles.low()[i] = low[index];
+      candles.close()[i] = close[index];
+    }
+    return candles;
+  }
+
+  int size() {
+    return size;
+  }
+
+  // Number of retained candles opened before the epoch second, or up to it when inclusive
+  private int countBefore(long epochSecond, boolean inclusive) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      long middleEpochSecond = openEpochSeconds[physicalIndex(middle)];
+      if (middleEpochSecond < epochSecond || inclusive && middleEpochSecond == epochSecond) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // Logical index 0 is the oldest candle still retained
+  private int physicalIndex(int logicalIndex) {
+    int capacity = openEpochSeconds.length;
+    return (next - size + logicalIndex + capacity) % capacity;
+  }
+
+  record Candles(long[] openEpochSeconds, double[] open, double[] high, double[] low, double[] close) {
+
+    int size() {
+      return openEpochSeconds.length;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.pluralsight.currencyexchange.currency;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Exchange rates between every pair of currencies, derived from the USD legs once per tick.
+ * The N x N matrix is stored row-major in a flat array, so a cross rate lookup is a single array read.
+ * A pair is unavailable, and its rate NaN, when the USD rate of one of its currencies is missing or not positive.
+ */
+public final class CrossRateMatrix {
+
+  public static final String BASE_CURRENCY = "USD";
+
+  /**
+   * Supported currencies plus USD, sorted, the position of a currency is its row and column in the matrix.
+   */
+  public static final List<String> CURRENCY_CODES = Stream.concat(CurrencyRateData.SUPPORTED_CURRENCIES.stream(), Stream.of(BASE_CURRENCY))
+    .sorted()
+    .toList();
+
+  private static final Map<String, Integer> INDEXES = new HashMap<>();
+
+  static {
+    for (int i = 0; i < CURRENCY_CODES.size(); i++) {
+      INDEXES.put(CURRENCY_CODES.get(i), i);
+    }
+  }
+
+  private final double[] rates;
+
+  private CrossRateMatrix(double[] rates) {
+    this.rates = rates;
+  }
+
+  /**
+   * Builds the matrix from the USD rates (1 USD = rate X): 1 FROM = usdRate(TO) / usdRate(FROM) TO.
+   */
+  static CrossRateMatrix fromUsdRates(List<CurrencyRateData> usdRates) {
+    int size = CURRENCY_CODES.size();
+    double[] usdLegs = new double[size];
+    Arrays.fill(usdLegs, Double.NaN);
+    usdLegs[INDEXES.get(BASE_CURRENCY)] = 1.0;
+    for (CurrencyRateData usdRate : usdRates) {
+      double rate = usdRate.rate() == null ? 0.0 : usdRate.rate().doubleValue();
+      // A rate of 0 would turn into Infinity or NaN when divided, it is kept unavailable instead
+      if (rate > 0.0 && Double.isFinite(rate)) {
+        usdLegs[INDEXES.get(usdRate.currencyCode())] = rate;
+      }
+    }
+
+    double[] rates = new double[size * size];
+    for (int from = 0; from < size; from++) {
+      for (int to = 0; to < size; to++) {
+        rates[from * size + to] = from == to ? 1.0 : usdLegs[to] / usdLegs[from];
+      }
+    }
+    return new CrossRateMatrix(rates);
+  }
+
+  /**
+   * Returns the position of the currency in the matrix, or -1 if it is not supported.
+   */
+  public static int indexOf(String currencyCode) {
+    Integer index = INDEXES.get(currencyCode);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Returns whether both currencies have a USD rate, using indexes from {@link #indexOf(String)}.
+   */
+  public boolean isAvailable(int fromIndex, int toIndex) {
+    return !Double.isNaN(rate(fromIndex, toIndex));
+  }
+
+  /**
+   * Returns how much 1 unit of the first currency is worth in the second one, NaN if the pair is unavailable, using indexes from {@link #indexOf(String)}.
+   */
+  public double rate(int fromIndex, int toIndex) {
+    return rates[fromIndex * CURRENCY_CODES.size() + toIndex];
+  }
+}
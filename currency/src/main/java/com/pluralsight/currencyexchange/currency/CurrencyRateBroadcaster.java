@@ -0,0 +1,119 @@
+package com.pluralsight.currencyexchange.currency;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.jboss.logging.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Pushes the exchange rates of every new snapshot to every {@code StreamRates} subscriber.
+ * The full rate list is built once per tick and shared by all subscribers, filtered responses are
+ * built once per distinct currency filter. All {@code onNext} calls happen on a single pusher
+ * thread, so a subscriber's stream is never written concurrently and a slow client never delays the tick.
+ */
+class CurrencyRateBroadcaster {
+
+  private static final Logger LOG = Logger.getLogger(CurrencyRateBroadcaster.class);
+
+  private final Supplier<CurrencyRateListResponse> rates;
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  private final ExecutorService pusher = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "currency-rate-pusher");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  record Subscriber(ServerCallStreamObserver<CurrencyRateListResponse> observer, Set<String> currencyCodes) {
+  }
+
+  CurrencyRateBroadcaster(Supplier<CurrencyRateListResponse> rates) {
+    this.rates = rates;
+  }
+
+  void subscribe(ServerCallStreamObserver<CurrencyRateListResponse> observer, Set<String> currencyCodes) {
+    Subscriber subscriber = new Subscriber(observer, currencyCodes);
+    observer.setOnCancelHandler(() -> {
+      subscribers.remove(subscriber);
+      LOG.debug("Rate stream cancelled, " + subscribers.size() + " subscribers left");
+    });
+    subscribers.add(subscriber);
+    LOG.debug("New rate stream subscriber, " + subscribers.size() + " subscribers");
+
+    // Send the current rates straight away rather than waiting for the next tick
+    pusher.execute(() -> push(subscriber, filter(rates.get(), currencyCodes)));
+  }
+
+  /**
+   * Pushes the rates of a new tick to every subscriber, on the pusher thread.
+   */
+  void broadcast(CurrencyRateListResponse allRates) {
+    if (subscribers.isEmpty()) {
+      return;
+    }
+    pusher.execute(() -> tick(allRates));
+  }
+
+  int subscriberCount() {
+    return subscribers.size();
+  }
+
+  void shutdown() {
+    pusher.shutdownNow();
+    for (Subscriber subscriber : subscribers) {
+      try {
+        subscriber.observer().onCompleted();
+      } catch (Exception e) {
+        LOG.debug("Could not complete rate stream", e);
+      }
+    }
+    subscribers.clear();
+  }
+
+  private void tick(CurrencyRateListResponse allRates) {
+    try {
+      Map<Set<String>, CurrencyRateListResponse> responses = new HashMap<>();
+      for (Subscriber subscriber : subscribers) {
+        push(subscriber, responses.computeIfAbsent(subscriber.currencyCodes(), codes -> filter(allRates, codes)));
+      }
+    } catch (Exception e) {
+      LOG.error("Error broadcasting currency rates", e);
+    }
+  }
+
+  private void push(Subscriber subscriber, CurrencyRateListResponse response) {
+    ServerCallStreamObserver<CurrencyRateListResponse> observer = subscriber.observer();
+    if (observer.isCancelled()) {
+      subscribers.remove(subscriber);
+      return;
+    }
+    // A slow client skips this tick, it gets the latest rates on the next one
+    if (!observer.isReady()) {
+      return;
+    }
+    try {
+      observer.onNext(response);
+    } catch (Exception e) {
+      LOG.warn("Dropping rate stream subscriber: " + e.getMessage());
+      subscribers.remove(subscriber);
+    }
+  }
+
+  private static CurrencyRateListResponse filter(CurrencyRateListResponse allRates, Set<String> currencyCodes) {
+    if (currencyCodes.isEmpty()) {
+      return allRates;
+    }
+    CurrencyRateListResponse.Builder builder = CurrencyRateListResponse.newBuilder();
+    for (CurrencyRate currencyRate : allRates.getCurrencyRatesList()) {
+      if (currencyCodes.contains(currencyRate.getCurrencyCode())) {
+        builder.addCurrencyRates(currencyRate);
+      }
+    }
+    return builder.build();
+  }
+}
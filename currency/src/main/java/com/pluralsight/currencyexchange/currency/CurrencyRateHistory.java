@@ -0,0 +1,74 @@
+package com.pluralsight.currencyexchange.currency;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Embedded time series store of the exchange rates.
+ * Every snapshot calculated by the {@link CurrencyRateSnapshotEngine} is appended to a per-currency
+ * {@link RateTimeSeries}, which keeps at most {@code exchange-rates.history.retention} of ticks.
+ */
+@ApplicationScoped
+public class CurrencyRateHistory {
+
+  private static final Logger LOG = Logger.getLogger(CurrencyRateHistory.class);
+
+  @ConfigProperty(name = "exchange-rates.history.retention", defaultValue = "24H")
+  Duration retention;
+
+  private Map<String, RateTimeSeries> series;
+
+  CurrencyRateHistory() {
+  }
+
+  CurrencyRateHistory(Duration retention) {
+    this.retention = retention;
+    init();
+  }
+
+  @PostConstruct
+  void init() {
+    Map<String, RateTimeSeries> series = new HashMap<>();
+    for (String currencyCode : CurrencyRateData.SUPPORTED_CURRENCIES) {
+      series.put(currencyCode, new RateTimeSeries(retention.toSeconds()));
+    }
+    this.series = Map.copyOf(series);
+    LOG.info("Keeping " + retention + " of exchange rate history");
+  }
+
+  void onSnapshot(@Observes CurrencyRateSnapshot snapshot) {
+    for (CurrencyRateData rate : snapshot.rates()) {
+      append(rate.currencyCode(), snapshot.epochSecond(), rate.rate().doubleValue());
+    }
+  }
+
+  void append(String currencyCode, long epochSecond, double rate) {
+    RateTimeSeries timeSeries = series.get(currencyCode);
+    if (timeSeries != null) {
+      timeSeries.append(epochSecond, rate);
+    }
+  }
+
+  /**
+   * Returns the rates of the currency between the two epoch seconds (both inclusive), or null if the currency is not supported.
+   */
+  RateTimeSeries.Points points(String currencyCode, long fromEpochSecond, long toEpochSecond) {
+    RateTimeSeries timeSeries = series.get(currencyCode);
+    return timeSeries == null ? null : timeSeries.range(fromEpochSecond, toEpochSecond);
+  }
+
+  /**
+   * Returns the candles of the currency opened between the two epoch seconds (both inclusive), or null if the currency is not supported.
+   */
+  CandleSeries.Candles candles(String currencyCode, CandleResolution resolution, long fromEpochSecond, long toEpochSecond) {
+    RateTimeSeries timeSeries = series.get(currencyCode);
+    return timeSeries == null ? null : timeSeries.candles(resolution, fromEpochSecond, toEpochSecond);
+  }
+}
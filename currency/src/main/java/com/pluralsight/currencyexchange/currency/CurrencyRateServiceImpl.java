@@ -1,37 +1,39 @@
 package com.pluralsight.currencyexchange.currency;
 
 import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import io.quarkus.grpc.GrpcService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 @GrpcService
 public class CurrencyRateServiceImpl extends CurrencyRateServiceGrpc.CurrencyRateServiceImplBase {
 
   private static final Logger LOG = Logger.getLogger(CurrencyRateServiceImpl.class);
 
-  /**
-   * Currency-specific seeds used in the rate fluctuation algorithm.
-   * Each currency gets a unique seed value that is added to the current timestamp
-   * in the sin() function to create different fluctuation patterns for each currency.
-   * This ensures that different currencies don't fluctuate in sync and creates
-   * more realistic, independent exchange rate movements.
-   */
-  private static final Map<String, Long> CURRENCY_SEEDS = Map.of(
-    "AUD", 1000L,
-    "CAD", 2000L,
-    "CHF", 3000L,
-    "EUR", 4000L,
-    "GBP", 5000L,
-    "JPY", 6000L
-  );
+  @Inject
+  CurrencyRateSnapshotEngine snapshotEngine;
+
+  @Inject
+  CurrencyRateHistory rateHistory;
+
+  private CurrencyRateBroadcaster broadcaster;
+
+  @PostConstruct
+  void startBroadcaster() {
+    broadcaster = new CurrencyRateBroadcaster(() -> snapshotEngine.current().allRatesResponse());
+  }
+
+  void onSnapshot(@Observes CurrencyRateSnapshot snapshot) {
+    broadcaster.broadcast(snapshot.allRatesResponse());
+  }
 
   @Override
   public void getAllCurrentRates(Empty request, StreamObserver<CurrencyRateListResponse> responseObserver) {
@@ -39,89 +41,217 @@ public class CurrencyRateServiceImpl extends CurrencyRateServiceGrpc.CurrencyRat
 
     try {
 
-      List<CurrencyRateData> currencyRates = getAllCurrentRates();
+      CurrencyRateListResponse response = snapshotEngine.current().allRatesResponse();
+      LOG.info("Returning " + response.getCurrencyRatesCount() + " currency rates");
+
+      responseObserver.onNext(response);
+      responseObserver.onCompleted();
+
+    } catch (Exception e) {
+      LOG.error("Error getting all current rates", e);
+      responseObserver.onError(e);
+    }
+  }
+
+  @Override
+  public void getCurrentRate(CurrencyRequest request, StreamObserver<CurrencyRateResponse> responseObserver) {
+    LOG.info("Getting current rate for currency: " + request.getCurrencyCode());
 
-      CurrencyRateListResponse.Builder responseBuilder = CurrencyRateListResponse.newBuilder();
+    try {
 
-      for (CurrencyRateData currencyRate : currencyRates) {
-        responseBuilder.addCurrencyRates(convertToGrpc(currencyRate));
+      CurrencyRateResponse response = snapshotEngine.current().rateResponse(request.getCurrencyCode());
+      if (response == null) {
+        LOG.warn("Unsupported currency: " + request.getCurrencyCode());
+        responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Unsupported currency: " + request.getCurrencyCode()).asRuntimeException());
+        return;
       }
 
-      CurrencyRateListResponse response = responseBuilder.build();
-      LOG.info("Returning " + currencyRates.size() + " currency rates");
+      LOG.info("Returning exchange rate for " + request.getCurrencyCode() + ": " + response.getCurrencyRate().getRate());
 
       responseObserver.onNext(response);
       responseObserver.onCompleted();
 
     } catch (Exception e) {
-      LOG.error("Error getting all current rates", e);
+      LOG.error("Error getting current rate for " + request.getCurrencyCode(), e);
       responseObserver.onError(e);
     }
   }
 
   @Override
-  public void getCurrentRate(CurrencyRequest request, StreamObserver<CurrencyRateResponse> responseObserver) {
-    LOG.info("Getting current rate for currency: " + request.getCurrencyCode());
+  public void getRates(CurrencyRatesRequest request, StreamObserver<CurrencyRatesResponse> responseObserver) {
+    LOG.info("Getting current rates for currencies: " + request.getCurrencyCodesList());
 
     try {
 
-      CurrencyRateData currencyRate = getCurrencyRate(request.getCurrencyCode());
+      CurrencyRateSnapshot snapshot = snapshotEngine.current();
+      CurrencyRatesResponse.Builder responseBuilder = CurrencyRatesResponse.newBuilder();
 
-      CurrencyRateResponse response = CurrencyRateResponse.newBuilder()
-        .setCurrencyRate(convertToGrpc(currencyRate))
-        .build();
+      for (String currencyCode : request.getCurrencyCodesList()) {
+        CurrencyRateResponse rateResponse = snapshot.rateResponse(currencyCode);
+        if (rateResponse != null) {
+          responseBuilder.addCurrencyRates(rateResponse.getCurrencyRate());
+        } else {
+          responseBuilder.addUnknownCurrencyCodes(currencyCode);
+        }
+      }
 
-      LOG.info("Returning exchange rate for " + request.getCurrencyCode() + ": " + currencyRate.rate());
+      CurrencyRatesResponse response = responseBuilder.build();
+      LOG.info("Returning " + response.getCurrencyRatesCount() + " currency rates and " + response.getUnknownCurrencyCodesCount() + " unknown currencies");
 
       responseObserver.onNext(response);
       responseObserver.onCompleted();
 
     } catch (Exception e) {
-      LOG.error("Error getting current rate for " + request.getCurrencyCode(), e);
+      LOG.error("Error getting current rates for " + request.getCurrencyCodesList(), e);
       responseObserver.onError(e);
     }
   }
 
-  private List<CurrencyRateData> getAllCurrentRates() {
-    return CurrencyRateData.SUPPORTED_CURRENCIES.stream()
-      .map(currencyCode -> calculateRate(currencyCode))
-      .toList();
+  @Override
+  public void streamRates(StreamRatesRequest request, StreamObserver<CurrencyRateListResponse> responseObserver) {
+    LOG.info("Streaming current rates for currencies: " + request.getCurrencyCodesList());
+
+    Set<String> currencyCodes = Set.copyOf(request.getCurrencyCodesList());
+    for (String currencyCode : currencyCodes) {
+      if (!CurrencyRateData.SUPPORTED_CURRENCIES.contains(currencyCode)) {
+        responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Unsupported currency: " + currencyCode).asRuntimeException());
+        return;
+      }
+    }
+
+    broadcaster.subscribe((ServerCallStreamObserver<CurrencyRateListResponse>) responseObserver, currencyCodes);
   }
 
-  private CurrencyRateData getCurrencyRate(String currencyCode) {
-    if (!CurrencyRateData.SUPPORTED_CURRENCIES.contains(currencyCode)) {
-      return null;
+  @Override
+  public void getRateHistory(RateHistoryRequest request, StreamObserver<RateHistoryResponse> responseObserver) {
+    LOG.info("Getting rate history for currency: " + request.getCurrencyCode());
+
+    try {
+
+      RateTimeSeries.Points points = rateHistory.points(request.getCurrencyCode(), request.getFromEpochSecond(), toEpochSecond(request.getToEpochSecond()));
+      if (points == null) {
+        responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Unsupported currency: " + request.getCurrencyCode()).asRuntimeException());
+        return;
+      }
+
+      RateHistoryResponse.Builder responseBuilder = RateHistoryResponse.newBuilder().setCurrencyCode(request.getCurrencyCode());
+      for (int i = 0; i < points.size(); i++) {
+        responseBuilder.addPoints(RatePoint.newBuilder()
+          .setEpochSecond(points.epochSeconds()[i])
+          .setRate(points.rates()[i]));
+      }
+
+      LOG.info("Returning " + points.size() + " rates for " + request.getCurrencyCode());
+
+      responseObserver.onNext(responseBuilder.build());
+      responseObserver.onCompleted();
+
+    } catch (Exception e) {
+      LOG.error("Error getting rate history for " + request.getCurrencyCode(), e);
+      responseObserver.onError(e);
     }
-    return calculateRate(currencyCode);
   }
 
-  private CurrencyRate convertToGrpc(CurrencyRateData rate) {
-    return CurrencyRate.newBuilder()
-      .setCurrencyCode(rate.currencyCode())
-      .setRate(rate.rate().doubleValue())
-      .setTimestamp(rate.timestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-      .build();
+  @Override
+  public void getRateCandles(RateCandlesRequest request, StreamObserver<RateCandlesResponse> responseObserver) {
+    CandleResolution resolution = request.getResolution() == CandleResolution.CANDLE_RESOLUTION_UNSPECIFIED ? CandleResolution.ONE_MINUTE : request.getResolution();
+    LOG.info("Getting " + resolution + " rate candles for currency: " + request.getCurrencyCode());
+
+    try {
+
+      CandleSeries.Candles candles = rateHistory.candles(request.getCurrencyCode(), resolution, request.getFromEpochSecond(), toEpochSecond(request.getToEpochSecond()));
+      if (candles == null) {
+        responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Unsupported currency: " + request.getCurrencyCode()).asRuntimeException());
+        return;
+      }
+
+      RateCandlesResponse.Builder responseBuilder = RateCandlesResponse.newBuilder()
+        .setCurrencyCode(request.getCurrencyCode())
+        .setResolution(resolution);
+      for (int i = 0; i < candles.size(); i++) {
+        responseBuilder.addCandles(RateCandle.newBuilder()
+          .setOpenEpochSecond(candles.openEpochSeconds()[i])
+          .setOpen(candles.open()[i])
+          .setHigh(candles.high()[i])
+          .setLow(candles.low()[i])
+          .setClose(candles.close()[i]));
+      }
+
+      LOG.info("Returning " + candles.size() + " candles for " + request.getCurrencyCode());
+
+      responseObserver.onNext(responseBuilder.build());
+      responseObserver.onCompleted();
+
+    } catch (Exception e) {
+      LOG.error("Error getting rate candles for " + request.getCurrencyCode(), e);
+      responseObserver.onError(e);
+    }
   }
 
-  private CurrencyRateData calculateRate(String currencyCode) {
-    BigDecimal baseRate = CurrencyRateData.EXCHANGE_RATES.get(currencyCode);
-    if (baseRate == null) {
-      throw new IllegalArgumentException("Unsupported currency: " + currencyCode);
+  @Override
+  public void getCrossRate(CrossRateRequest request, StreamObserver<CrossRateResponse> responseObserver) {
+    LOG.info("Getting cross rate from " + request.getFromCurrencyCode() + " to " + request.getToCurrencyCode());
+
+    try {
+
+      int fromIndex = CrossRateMatrix.indexOf(request.getFromCurrencyCode());
+      int toIndex = CrossRateMatrix.indexOf(request.getToCurrencyCode());
+      if (fromIndex < 0 || toIndex < 0) {
+        String currencyCode = fromIndex < 0 ? request.getFromCurrencyCode() : request.getToCurrencyCode();
+        responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Unsupported currency: " + currencyCode).asRuntimeException());
+        return;
+      }
+
+      CurrencyRateSnapshot snapshot = snapshotEngine.current();
+      if (!snapshot.crossRates().isAvailable(fromIndex, toIndex)) {
+        responseObserver.onError(Status.INVALID_ARGUMENT
+          .withDescription("No rate available from " + request.getFromCurrencyCode() + " to " + request.getToCurrencyCode())
+          .asRuntimeException());
+        return;
+      }
+      CrossRateResponse response = CrossRateResponse.newBuilder()
+        .setFromCurrencyCode(request.getFromCurrencyCode())
+        .setToCurrencyCode(request.getToCurrencyCode())
+        .setRate(snapshot.crossRates().rate(fromIndex, toIndex))
+        .setTimestamp(snapshot.crossRateMatrixResponse().getTimestamp())
+        .build();
+
+      LOG.info("Returning cross rate from " + request.getFromCurrencyCode() + " to " + request.getToCurrencyCode() + ": " + response.getRate());
+
+      responseObserver.onNext(response);
+      responseObserver.onCompleted();
+
+    } catch (Exception e) {
+      LOG.error("Error getting cross rate from " + request.getFromCurrencyCode() + " to " + request.getToCurrencyCode(), e);
+      responseObserver.onError(e);
     }
+  }
 
-    // Generate fluctuation using current timestamp + currency-specific seed
-    long seed = CURRENCY_SEEDS.get(currencyCode);
-    long currentTime = System.currentTimeMillis() / 1_000; // Convert to seconds
-    double fluctuation = Math.sin(currentTime + seed) * 0.2;
+  @Override
+  public void getCrossRateMatrix(Empty request, StreamObserver<CrossRateMatrixResponse> responseObserver) {
+    LOG.info("Getting cross rate matrix");
 
-    BigDecimal rate = baseRate.add(BigDecimal.valueOf(fluctuation))
-      .setScale(4, RoundingMode.HALF_UP);
+    try {
+
+      CrossRateMatrixResponse response = snapshotEngine.current().crossRateMatrixResponse();
+      LOG.info("Returning cross rates of " + response.getCurrencyCodesCount() + " currencies");
+
+      responseObserver.onNext(response);
+      responseObserver.onCompleted();
 
-    // Ensure JPY has appropriate scale (2 decimal places)
-    if ("JPY".equals(currencyCode)) {
-      rate = rate.setScale(2, RoundingMode.HALF_UP);
+    } catch (Exception e) {
+      LOG.error("Error getting cross rate matrix", e);
+      responseObserver.onError(e);
     }
+  }
+
+  @PreDestroy
+  void closeStreams() {
+    broadcaster.shutdown();
+  }
 
-    return new CurrencyRateData(currencyCode, rate, LocalDateTime.now());
+  // An unset upper bound means up to the latest rate
+  private static long toEpochSecond(long toEpochSecond) {
+    return toEpochSecond == 0 ? Long.MAX_VALUE : toEpochSecond;
   }
 }
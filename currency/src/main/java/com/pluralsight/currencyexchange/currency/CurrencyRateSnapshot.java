@@ -0,0 +1,22 @@
+package com.pluralsight.currencyexchange.currency;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of all the exchange rates for one rate tick.
+ * The gRPC messages are built once when the tick starts and then shared by every request of that tick.
+ */
+public record CurrencyRateSnapshot(
+  long epochSecond,                                 // Tick the rates were calculated for
+  List<CurrencyRateData> rates,                     // Rates sorted by currency code
+  CurrencyRateListResponse allRatesResponse,        // Response of GetAllCurrentRates
+  Map<String, CurrencyRateResponse> rateResponses,  // Responses of GetCurrentRate, by currency code
+  CrossRateMatrix crossRates,                       // Rates between every pair of currencies
+  CrossRateMatrixResponse crossRateMatrixResponse   // Response of GetCrossRateMatrix
+) {
+
+  public CurrencyRateResponse rateResponse(String currencyCode) {
+    return rateResponses.get(currencyCode);
+  }
+}
@@ -0,0 +1,178 @@
+package com.pluralsight.currencyexchange.currency;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates all the exchange rates with the configured {@link RateProvider} once per tick and caches the resulting gRPC messages.
+ * Rates only change once per second, so every request within the same second gets the same
+ * pre-built {@link CurrencyRateSnapshot} instead of recomputing and re-converting the rates.
+ * A background ticker makes sure every tick is calculated and fires each new snapshot as a CDI event: it is the only
+ * tick source of the service, rate streams and history are driven by that event.
+ */
+@Startup
+@ApplicationScoped
+public class CurrencyRateSnapshotEngine {
+
+  private static final Logger LOG = Logger.getLogger(CurrencyRateSnapshotEngine.class);
+
+  private static final List<String> CURRENCY_CODES = CurrencyRateData.SUPPORTED_CURRENCIES.stream().sorted().toList();
+
+  private final Clock clock;
+
+  @Inject
+  Event<CurrencyRateSnapshot> snapshotEvent;
+
+  @Inject
+  Instance<RateProvider> rateProviders;
+
+  private RateProvider rateProvider;
+
+  private volatile CurrencyRateSnapshot snapshot;
+
+  private ScheduledExecutorService ticker;
+
+  // Only read and written by the ticker thread
+  private long publishedEpochSecond = Long.MIN_VALUE;
+
+  CurrencyRateSnapshotEngine() {
+    this(Clock.systemDefaultZone(), null);
+  }
+
+  CurrencyRateSnapshotEngine(Clock clock, RateProvider rateProvider) {
+    this.clock = clock;
+    this.rateProvider = rateProvider;
+  }
+
+  @PostConstruct
+  void startTicker() {
+    rateProvider = rateProviders.get();
+    LOG.info("Calculating currency rates with " + rateProvider.getClass().getSimpleName());
+
+    ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "currency-rate-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // Align ticks on the second boundary, when the rates actually change
+    long initialDelay = 1_000 - clock.millis() % 1_000;
+    ticker.scheduleAtFixedRate(this::tick, initialDelay, 1_000, TimeUnit.MILLISECONDS);
+  }
+
+  private void tick() {
+    // An exception would cancel the scheduled ticks, so it is only logged
+    try {
+      publish(current());
+    } catch (Exception e) {
+      LOG.error("Error calculating currency rates", e);
+    }
+  }
+
+  /**
+   * Fires the snapshot unless it was already fired. Called by the ticker thread only, outside the refresh lock,
+   * so observers see every snapshot once, in tick order, without blocking the requests of a new tick.
+   */
+  void publish(CurrencyRateSnapshot current) {
+    if (current.epochSecond() <= publishedEpochSecond) {
+      return;
+    }
+    publishedEpochSecond = current.epochSecond();
+    if (snapshotEvent != null) {
+      try {
+        snapshotEvent.fire(current);
+      } catch (Exception e) {
+        LOG.error("Error notifying currency rate snapshot observers", e);
+      }
+    }
+  }
+
+  @PreDestroy
+  void stopTicker() {
+    ticker.shutdownNow();
+  }
+
+  /**
+   * Returns the snapshot of the current tick, only the first call of a new tick calculates the rates.
+   */
+  public CurrencyRateSnapshot current() {
+    long epochSecond = clock.millis() / 1_000;
+    CurrencyRateSnapshot current = snapshot;
+    if (current != null && current.epochSecond() >= epochSecond) {
+      return current;
+    }
+    return refresh(epochSecond);
+  }
+
+  private synchronized CurrencyRateSnapshot refresh(long epochSecond) {
+    // Another thread may have already calculated this tick while we were waiting for the lock
+    CurrencyRateSnapshot current = snapshot;
+    if (current != null && current.epochSecond() >= epochSecond) {
+      return current;
+    }
+    current = calculateSnapshot(epochSecond);
+    snapshot = current;
+    LOG.debug("Calculated currency rates for tick " + epochSecond);
+    return current;
+  }
+
+  private CurrencyRateSnapshot calculateSnapshot(long epochSecond) {
+    LocalDateTime timestamp = LocalDateTime.now(clock);
+    String formattedTimestamp = timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+
+    List<CurrencyRateData> rates = new ArrayList<>(CURRENCY_CODES.size());
+    Map<String, CurrencyRateResponse> rateResponses = new HashMap<>();
+    CurrencyRateListResponse.Builder allRatesBuilder = CurrencyRateListResponse.newBuilder();
+
+    for (String currencyCode : CURRENCY_CODES) {
+      CurrencyRateData rate = new CurrencyRateData(currencyCode, rateProvider.rate(currencyCode, epochSecond), timestamp);
+      CurrencyRate currencyRate = convertToGrpc(rate, formattedTimestamp);
+
+      rates.add(rate);
+      allRatesBuilder.addCurrencyRates(currencyRate);
+      rateResponses.put(currencyCode, CurrencyRateResponse.newBuilder().setCurrencyRate(currencyRate).build());
+    }
+
+    CrossRateMatrix crossRates = CrossRateMatrix.fromUsdRates(rates);
+
+    return new CurrencyRateSnapshot(epochSecond, List.copyOf(rates), allRatesBuilder.build(), Map.copyOf(rateResponses),
+      crossRates, convertToGrpc(crossRates, formattedTimestamp));
+  }
+
+  private static CrossRateMatrixResponse convertToGrpc(CrossRateMatrix crossRates, String formattedTimestamp) {
+    int size = CrossRateMatrix.CURRENCY_CODES.size();
+    CrossRateMatrixResponse.Builder builder = CrossRateMatrixResponse.newBuilder()
+      .addAllCurrencyCodes(CrossRateMatrix.CURRENCY_CODES)
+      .setTimestamp(formattedTimestamp);
+    for (int from = 0; from < size; from++) {
+      for (int to = 0; to < size; to++) {
+        builder.addRates(crossRates.rate(from, to));
+      }
+    }
+    return builder.build();
+  }
+
+  static CurrencyRate convertToGrpc(CurrencyRateData rate, String formattedTimestamp) {
+    return CurrencyRate.newBuilder()
+      .setCurrencyCode(rate.currencyCode())
+      .setRate(rate.rate().doubleValue())
+      .setTimestamp(formattedTimestamp)
+      .build();
+  }
+}
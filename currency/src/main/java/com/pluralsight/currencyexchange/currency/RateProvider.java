@@ -0,0 +1,17 @@
+package com.pluralsight.currencyexchange.currency;
+
+import java.math.BigDecimal;
+
+/**
+ * Source of the exchange rates used by the {@link CurrencyRateSnapshotEngine}.
+ * The implementation is selected with the {@code exchange-rates.provider} property:
+ * {@code sine} (default) for the simulated rates, {@code replay} to replay recorded ticks from a {@link TickFile}.
+ */
+public interface RateProvider {
+
+  /**
+   * Returns how much 1 USD is worth in the currency at the given tick.
+   * Called once per supported currency, in currency order, for every new tick.
+   */
+  BigDecimal rate(String currencyCode, long epochSecond);
+}
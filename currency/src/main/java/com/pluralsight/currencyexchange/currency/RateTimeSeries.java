@@ -0,0 +1,99 @@
+package com.pluralsight.currencyexchange.currency;
+
+/**
+ * Rate history of one currency, kept in primitive ring buffers so memory is bounded by the retention.
+ * Raw ticks double as one second candles, minute and hour candles are maintained as ticks are appended.
+ */
+class RateTimeSeries {
+
+  private final long[] epochSeconds;
+  private final double[] rates;
+  private int next;
+  private int size;
+
+  private final CandleSeries minuteCandles;
+  private final CandleSeries hourCandles;
+
+  RateTimeSeries(long retentionSeconds) {
+    int capacity = (int) Math.max(1, retentionSeconds);
+    this.epochSeconds = new long[capacity];
+    this.rates = new double[capacity];
+    // One extra candle for the partial one at each end of the retention window
+    this.minuteCandles = new CandleSeries(60, (int) (retentionSeconds / 60) + 2);
+    this.hourCandles = new CandleSeries(3_600, (int) (retentionSeconds / 3_600) + 2);
+  }
+
+  synchronized void append(long epochSecond, double rate) {
+    if (size > 0 && epochSeconds[physicalIndex(size - 1)] >= epochSecond) {
+      return;
+    }
+    epochSeconds[next] = epochSecond;
+    rates[next] = rate;
+    next = (next + 1) % epochSeconds.length;
+    if (size < epochSeconds.length) {
+      size++;
+    }
+    minuteCandles.update(epochSecond, rate);
+    hourCandles.update(epochSecond, rate);
+  }
+
+  /**
+   * Copies the rates between the two epoch seconds (both inclusive), oldest first.
+   */
+  synchronized Points range(long fromEpochSecond, long toEpochSecond) {
+    int first = countBefore(fromEpochSecond, false);
+    int count = Math.max(0, countBefore(toEpochSecond, true) - first);
+
+    Points points = new Points(new long[count], new double[count]);
+    for (int i = 0; i < count; i++) {
+      int index = physicalIndex(first + i);
+      points.epochSeconds()[i] = epochSeconds[index];
+      points.rates()[i] = rates[index];
+    }
+    return points;
+  }
+
+  synchronized CandleSeries.Candles candles(CandleResolution resolution, long fromEpochSecond, long toEpochSecond) {
+    return switch (resolution) {
+      case ONE_SECOND -> {
+        Points points = range(fromEpochSecond, toEpochSecond);
+        yield new CandleSeries.Candles(points.epochSeconds(), points.rates(), points.rates(), points.rates(), points.rates());
+      }
+      case ONE_HOUR -> hourCandles.range(fromEpochSecond, toEpochSecond);
+      default -> minuteCandles.range(fromEpochSecond, toEpochSecond);
+    };
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  // Number of retained ticks before the epoch second, or up to it when inclusive
+  private int countBefore(long epochSecond, boolean inclusive) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      long middleEpochSecond = epochSeconds[physicalIndex(middle)];
+      if (middleEpochSecond < epochSecond || inclusive && middleEpochSecond == epochSecond) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // Logical index 0 is the oldest tick still retained
+  private int physicalIndex(int logicalIndex) {
+    int capacity = epochSeconds.length;
+    return (next - size + logicalIndex + capacity) % capacity;
+  }
+
+  record Points(long[] epochSeconds, double[] rates) {
+
+    int size() {
+      return epochSeconds.length;
+    }
+  }
+}
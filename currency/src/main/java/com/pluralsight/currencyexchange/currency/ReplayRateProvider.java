@@ -0,0 +1,120 @@
+package com.pluralsight.currencyexchange.currency;
+
+import io.quarkus.arc.lookup.LookupIfProperty;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Replays the rates recorded in a {@link TickFile}, at real time or accelerated by {@code exchange-rates.replay.speed}.
+ * The first tick asked for is aligned with the first record of the file, then every second of wall time
+ * moves the replay forward by {@code speed} seconds, and each currency gets the last rate recorded so far.
+ * The file is read sequentially through its memory-mapped buffer, each record is read only once per pass.
+ */
+@ApplicationScoped
+@LookupIfProperty(name = "exchange-rates.provider", stringValue = "replay")
+public class ReplayRateProvider implements RateProvider {
+
+  private static final Logger LOG = Logger.getLogger(ReplayRateProvider.class);
+
+  @ConfigProperty(name = "exchange-rates.replay.file")
+  Optional<String> file;
+
+  @ConfigProperty(name = "exchange-rates.replay.speed", defaultValue = "1")
+  double speed;
+
+  @ConfigProperty(name = "exchange-rates.replay.loop", defaultValue = "true")
+  boolean loop;
+
+  private TickFile tickFile;
+  private double[] latestRates;   // Last replayed rate, by currency of the file
+  private int nextRecord;
+  private long startEpochSecond = Long.MIN_VALUE;
+  private long replayedEpochSecond = Long.MIN_VALUE;
+
+  ReplayRateProvider() {
+  }
+
+  ReplayRateProvider(TickFile tickFile, double speed, boolean loop) {
+    this.speed = speed;
+    this.loop = loop;
+    load(tickFile);
+  }
+
+  @PostConstruct
+  void init() {
+    Path path = Path.of(file.orElseThrow(() -> new IllegalStateException("exchange-rates.replay.file is required to replay rates")));
+    load(TickFile.open(path));
+    LOG.info("Replaying " + tickFile.recordCount() + " ticks from " + path + " at x" + speed + (loop ? " in a loop" : ""));
+  }
+
+  private void load(TickFile tickFile) {
+    if (speed <= 0) {
+      throw new IllegalArgumentException("exchange-rates.replay.speed must be positive: " + speed);
+    }
+    this.tickFile = tickFile;
+    this.latestRates = new double[tickFile.currencyCodes().size()];
+    Arrays.fill(latestRates, Double.NaN);
+  }
+
+  @Override
+  public synchronized BigDecimal rate(String currencyCode, long epochSecond) {
+    if (epochSecond != replayedEpochSecond) {
+      replayUntil(epochSecond);
+      replayedEpochSecond = epochSecond;
+    }
+
+    int fileIndex = tickFile.currencyCodes().indexOf(currencyCode);
+    double rate = fileIndex < 0 ? Double.NaN : latestRates[fileIndex];
+    if (Double.isNaN(rate)) {
+      // Nothing recorded (yet) for this currency
+      BigDecimal baseRate = CurrencyRateData.EXCHANGE_RATES.get(currencyCode);
+      if (baseRate == null) {
+        throw new IllegalArgumentException("Unsupported currency: " + currencyCode);
+      }
+      return baseRate;
+    }
+
+    // Same precision as the simulated rates: 4 decimal places (2 for JPY)
+    return BigDecimal.valueOf(rate).setScale("JPY".equals(currencyCode) ? 2 : 4, RoundingMode.HALF_UP);
+  }
+
+  private void replayUntil(long epochSecond) {
+    int recordCount = tickFile.recordCount();
+    if (recordCount == 0) {
+      return;
+    }
+    if (startEpochSecond == Long.MIN_VALUE) {
+      startEpochSecond = epochSecond;
+    }
+
+    long firstMillis = tickFile.epochMillis(0);
+    long durationMillis = tickFile.epochMillis(recordCount - 1) - firstMillis + 1;
+    long elapsedMillis = (long) ((epochSecond - startEpochSecond) * 1_000 * speed);
+    if (loop) {
+      elapsedMillis = Math.floorMod(elapsedMillis, durationMillis);
+    }
+    long replayMillis = firstMillis + elapsedMillis;
+
+    // Start a new pass when the replay loops back (or time goes backwards)
+    if (nextRecord > 0 && tickFile.epochMillis(nextRecord - 1) > replayMillis) {
+      nextRecord = 0;
+      Arrays.fill(latestRates, Double.NaN);
+    }
+    while (nextRecord < recordCount && tickFile.epochMillis(nextRecord) <= replayMillis) {
+      int fileIndex = tickFile.currencyIndex(nextRecord);
+      // A corrupted record may point past the currencies of the header
+      if (fileIndex >= 0 && fileIndex < latestRates.length) {
+        latestRates[fileIndex] = tickFile.rate(nextRecord);
+      }
+      nextRecord++;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.pluralsight.currencyexchange.currency;
+
+import io.quarkus.arc.lookup.LookupUnlessProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * Simulated exchange rates, fluctuating with a sin() of the current second around the base rates of {@link CurrencyRateData#EXCHANGE_RATES}.
+ */
+@ApplicationScoped
+@LookupUnlessProperty(name = "exchange-rates.provider", stringValue = "replay", lookupIfMissing = true)
+public class SineRateProvider implements RateProvider {
+
+  /**
+   * Currency-specific seeds used in the rate fluctuation algorithm.
+   * Each currency gets a unique seed value that is added to the current timestamp
+   * in the sin() function to create different fluctuation patterns for each currency.
+   * This ensures that different currencies don't fluctuate in sync and creates
+   * more realistic, independent exchange rate movements.
+   */
+  private static final Map<String, Long> CURRENCY_SEEDS = Map.of(
+    "AUD", 1000L,
+    "CAD", 2000L,
+    "CHF", 3000L,
+    "EUR", 4000L,
+    "GBP", 5000L,
+    "JPY", 6000L
+  );
+
+  @Override
+  public BigDecimal rate(String currencyCode, long epochSecond) {
+    BigDecimal baseRate = CurrencyRateData.EXCHANGE_RATES.get(currencyCode);
+    if (baseRate == null) {
+      throw new IllegalArgumentException("Unsupported currency: " + currencyCode);
+    }
+
+    // Generate fluctuation using current timestamp + currency-specific seed
+    long seed = CURRENCY_SEEDS.get(currencyCode);
+    double fluctuation = Math.sin(epochSecond + seed) * 0.2;
+
+    BigDecimal rate = baseRate.add(BigDecimal.valueOf(fluctuation))
+      .setScale(4, RoundingMode.HALF_UP);
+
+    // Ensure JPY has appropriate scale (2 decimal places)
+    if ("JPY".equals(currencyCode)) {
+      rate = rate.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    return rate;
+  }
+}
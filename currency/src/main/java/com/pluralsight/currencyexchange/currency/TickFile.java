@@ -0,0 +1,152 @@
+package com.pluralsight.currencyexchange.currency;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Compact binary file of recorded rate ticks, read through a memory-mapped buffer.
+ * <pre>
+ * header: magic "TICK" | version (1 byte) | currency count (1 byte) | currency codes (3 ASCII bytes each)
+ * record: epoch millis (8 bytes) | currency index (1 byte) | rate (8 bytes, double)
+ * </pre>
+ * Records are fixed-size and sorted by time, all values are big-endian.
+ */
+public final class TickFile {
+
+  static final int MAGIC = 0x5449434B; // "TICK"
+  static final byte VERSION = 1;
+  static final int RECORD_SIZE = Long.BYTES + Byte.BYTES + Double.BYTES;
+  // The count is a single unsigned byte
+  static final int MAX_CURRENCIES = 255;
+  private static final int FIXED_HEADER_SIZE = Integer.BYTES + Byte.BYTES + Byte.BYTES;
+
+  private final MappedByteBuffer buffer;
+  private final List<String> currencyCodes;
+  private final int headerSize;
+  private final int recordCount;
+
+  private TickFile(MappedByteBuffer buffer, List<String> currencyCodes, int headerSize, int recordCount) {
+    this.buffer = buffer;
+    this.currencyCodes = currencyCodes;
+    this.headerSize = headerSize;
+    this.recordCount = recordCount;
+  }
+
+  public static TickFile open(Path path) {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Tick file larger than 2 GB: " + path);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.BIG_ENDIAN);
+
+      if (buffer.capacity() < FIXED_HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION) {
+        throw new IllegalArgumentException("Not a tick file: " + path);
+      }
+      int currencyCount = Byte.toUnsignedInt(buffer.get(5));
+      int headerSize = FIXED_HEADER_SIZE + currencyCount * 3;
+      if (buffer.capacity() < headerSize) {
+        throw new IllegalArgumentException("Truncated tick file header: " + path);
+      }
+      String[] currencyCodes = new String[currencyCount];
+      byte[] code = new byte[3];
+      for (int i = 0; i < currencyCount; i++) {
+        buffer.get(FIXED_HEADER_SIZE + i * 3, code);
+        currencyCodes[i] = new String(code, StandardCharsets.US_ASCII);
+      }
+      int recordCount = (buffer.capacity() - headerSize) / RECORD_SIZE;
+
+      return new TickFile(buffer, List.of(currencyCodes), headerSize, recordCount);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open tick file " + path, e);
+    }
+  }
+
+  public List<String> currencyCodes() {
+    return currencyCodes;
+  }
+
+  public int recordCount() {
+    return recordCount;
+  }
+
+  public long epochMillis(int record) {
+    return buffer.getLong(headerSize + record * RECORD_SIZE);
+  }
+
+  /**
+   * Returns the index of the record's currency in {@link #currencyCodes()}, from 0 to 255,
+   * not checked against the number of currencies of a corrupted file.
+   */
+  public int currencyIndex(int record) {
+    return Byte.toUnsignedInt(buffer.get(headerSize + record * RECORD_SIZE + Long.BYTES));
+  }
+
+  public double rate(int record) {
+    return buffer.getDouble(headerSize + record * RECORD_SIZE + Long.BYTES + Byte.BYTES);
+  }
+
+  /**
+   * Creates a tick file, records have to be appended in time order.
+   */
+  public static Writer writer(Path path, List<String> currencyCodes) throws IOException {
+    return new Writer(path, currencyCodes);
+  }
+
+  public static final class Writer implements Closeable {
+
+    private final DataOutputStream output;
+    private final List<String> currencyCodes;
+
+    private Writer(Path path, List<String> currencyCodes) throws IOException {
+      if (currencyCodes.size() > MAX_CURRENCIES) {
+        throw new IllegalArgumentException("A tick file holds at most " + MAX_CURRENCIES + " currencies: " + currencyCodes.size());
+      }
+      for (String currencyCode : currencyCodes) {
+        if (!isCurrencyCode(currencyCode)) {
+          throw new IllegalArgumentException("Currency code must be 3 ASCII characters: " + currencyCode);
+        }
+      }
+      this.currencyCodes = List.copyOf(currencyCodes);
+      this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+
+      ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE + currencyCodes.size() * 3);
+      header.putInt(MAGIC).put(VERSION).put((byte) currencyCodes.size());
+      for (String currencyCode : currencyCodes) {
+        header.put(currencyCode.getBytes(StandardCharsets.US_ASCII));
+      }
+      output.write(header.array());
+    }
+
+    public void append(long epochMillis, String currencyCode, double rate) throws IOException {
+      int currencyIndex = currencyCodes.indexOf(currencyCode);
+      if (currencyIndex < 0) {
+        throw new IllegalArgumentException("Currency not declared in the tick file: " + currencyCode);
+      }
+      output.writeLong(epochMillis);
+      output.writeByte(currencyIndex);
+      output.writeDouble(rate);
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+
+  private static boolean isCurrencyCode(String currencyCode) {
+    return currencyCode != null && currencyCode.length() == 3 && StandardCharsets.US_ASCII.newEncoder().canEncode(currencyCode);
+  }
+}
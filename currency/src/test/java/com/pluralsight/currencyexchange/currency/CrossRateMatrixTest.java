@@ -0,0 +1,72 @@
+package com.pluralsight.currencyexchange.currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+class CrossRateMatrixTest {
+
+  private final CrossRateMatrix matrix = CrossRateMatrix.fromUsdRates(List.of(
+    new CurrencyRateData("EUR", new BigDecimal("0.8"), LocalDateTime.now()),
+    new CurrencyRateData("GBP", new BigDecimal("0.5"), LocalDateTime.now()),
+    new CurrencyRateData("JPY", new BigDecimal("160"), LocalDateTime.now())
+  ));
+
+  @Test
+  void shouldDeriveCrossRatesFromUsdLegs() {
+    assertEquals(200.0, rate("EUR", "JPY"), 1e-9);
+    assertEquals(0.005, rate("JPY", "EUR"), 1e-9);
+    assertEquals(0.625, rate("EUR", "GBP"), 1e-9);
+    assertEquals(1.6, rate("GBP", "EUR"), 1e-9);
+  }
+
+  @Test
+  void shouldKeepUsdLegs() {
+    assertEquals(0.8, rate("USD", "EUR"), 1e-9);
+    assertEquals(1.25, rate("EUR", "USD"), 1e-9);
+    assertEquals(1.0, rate("USD", "USD"));
+    assertEquals(1.0, rate("JPY", "JPY"));
+  }
+
+  @Test
+  void shouldIndexSupportedCurrenciesAndUsd() {
+    assertEquals(7, CrossRateMatrix.CURRENCY_CODES.size());
+    assertEquals(0, CrossRateMatrix.indexOf("AUD"));
+    assertEquals(6, CrossRateMatrix.indexOf("USD"));
+    assertEquals(-1, CrossRateMatrix.indexOf("XXX"));
+  }
+
+  @Test
+  void shouldMarkPairsWithoutUsdRateUnavailable() {
+    CrossRateMatrix partial = CrossRateMatrix.fromUsdRates(List.of(
+      new CurrencyRateData("EUR", new BigDecimal("0.8"), LocalDateTime.now()),
+      new CurrencyRateData("GBP", BigDecimal.ZERO, LocalDateTime.now())
+    ));
+    int eur = CrossRateMatrix.indexOf("EUR");
+    int gbp = CrossRateMatrix.indexOf("GBP");
+    int jpy = CrossRateMatrix.indexOf("JPY");
+    int usd = CrossRateMatrix.indexOf("USD");
+
+    assertTrue(partial.isAvailable(usd, eur));
+    assertEquals(1.25, partial.rate(eur, usd), 1e-9);
+    assertFalse(partial.isAvailable(eur, jpy));
+    assertFalse(partial.isAvailable(jpy, eur));
+    assertFalse(partial.isAvailable(gbp, usd));
+    assertFalse(partial.isAvailable(usd, gbp));
+    assertTrue(Double.isNaN(partial.rate(eur, gbp)));
+    for (int from = 0; from < CrossRateMatrix.CURRENCY_CODES.size(); from++) {
+      for (int to = 0; to < CrossRateMatrix.CURRENCY_CODES.size(); to++) {
+        assertFalse(Double.isInfinite(partial.rate(from, to)));
+      }
+    }
+  }
+
+  private double rate(String from, String to) {
+    return matrix.rate(CrossRateMatrix.indexOf(from), CrossRateMatrix.indexOf(to));
+  }
+}
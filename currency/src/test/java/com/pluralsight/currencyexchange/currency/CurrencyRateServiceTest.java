@@ -3,13 +3,18 @@ package com.pluralsight.currencyexchange.currency;
 import com.google.protobuf.Empty;
 import io.quarkus.grpc.GrpcClient;
 import io.quarkus.test.junit.QuarkusTest;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -57,4 +62,139 @@ class CurrencyRateServiceTest {
     assertTrue(rate.getRate() > 0);
     assertNotNull(rate.getTimestamp());
   }
+
+  @Test
+  void shouldRejectUnsupportedCurrencyRate() throws Exception {
+    CurrencyRequest request = CurrencyRequest.newBuilder().setCurrencyCode("XXX").build();
+
+    CompletableFuture<Throwable> failure = new CompletableFuture<>();
+    currencyRateService.getCurrentRate(request).subscribe().with(
+      reply -> failure.completeExceptionally(new AssertionError("Unexpected rate")),
+      error -> failure.complete(error)
+    );
+
+    Throwable error = failure.get(5, TimeUnit.SECONDS);
+    assertInstanceOf(StatusRuntimeException.class, error);
+    assertEquals(Status.Code.INVALID_ARGUMENT, ((StatusRuntimeException) error).getStatus().getCode());
+  }
+
+  @Test
+  void shouldGetRatesInOneCall() throws Exception {
+    CurrencyRatesRequest request = CurrencyRatesRequest.newBuilder()
+      .addCurrencyCodes("JPY")
+      .addCurrencyCodes("XXX")
+      .addCurrencyCodes("EUR")
+      .build();
+
+    CompletableFuture<CurrencyRatesResponse> message = new CompletableFuture<>();
+    currencyRateService.getRates(request).subscribe().with(
+      reply -> message.complete(reply)
+    );
+
+    CurrencyRatesResponse response = message.get(5, TimeUnit.SECONDS);
+
+    assertEquals(2, response.getCurrencyRatesCount());
+    assertEquals("JPY", response.getCurrencyRates(0).getCurrencyCode());
+    assertEquals("EUR", response.getCurrencyRates(1).getCurrencyCode());
+    assertTrue(response.getCurrencyRates(1).getRate() > 0);
+    assertEquals(List.of("XXX"), response.getUnknownCurrencyCodesList());
+  }
+
+  @Test
+  void shouldGetRateHistoryAndCandles() throws Exception {
+    // Makes sure the current tick is recorded
+    shouldGetCurrentRates();
+
+    CompletableFuture<RateHistoryResponse> history = new CompletableFuture<>();
+    currencyRateService.getRateHistory(RateHistoryRequest.newBuilder().setCurrencyCode("EUR").build()).subscribe().with(
+      reply -> history.complete(reply)
+    );
+    CompletableFuture<RateCandlesResponse> candles = new CompletableFuture<>();
+    currencyRateService.getRateCandles(RateCandlesRequest.newBuilder().setCurrencyCode("EUR").setResolution(CandleResolution.ONE_HOUR).build()).subscribe().with(
+      reply -> candles.complete(reply)
+    );
+
+    RateHistoryResponse historyResponse = history.get(5, TimeUnit.SECONDS);
+    RateCandlesResponse candlesResponse = candles.get(5, TimeUnit.SECONDS);
+
+    assertEquals("EUR", historyResponse.getCurrencyCode());
+    assertTrue(historyResponse.getPointsCount() > 0);
+    assertTrue(historyResponse.getPoints(0).getRate() > 0);
+    assertEquals(CandleResolution.ONE_HOUR, candlesResponse.getResolution());
+    assertTrue(candlesResponse.getCandlesCount() > 0);
+    RateCandle candle = candlesResponse.getCandles(candlesResponse.getCandlesCount() - 1);
+    assertTrue(candle.getLow() <= candle.getClose() && candle.getClose() <= candle.getHigh());
+  }
+
+  @Test
+  void shouldGetCrossRates() throws Exception {
+    CrossRateRequest request = CrossRateRequest.newBuilder()
+      .setFromCurrencyCode("EUR")
+      .setToCurrencyCode("JPY")
+      .build();
+
+    CompletableFuture<CrossRateResponse> crossRate = new CompletableFuture<>();
+    currencyRateService.getCrossRate(request).subscribe().with(
+      reply -> crossRate.complete(reply)
+    );
+    CompletableFuture<CrossRateMatrixResponse> matrix = new CompletableFuture<>();
+    currencyRateService.getCrossRateMatrix(Empty.newBuilder().build()).subscribe().with(
+      reply -> matrix.complete(reply)
+    );
+
+    CrossRateResponse crossRateResponse = crossRate.get(5, TimeUnit.SECONDS);
+    CrossRateMatrixResponse matrixResponse = matrix.get(5, TimeUnit.SECONDS);
+
+    assertEquals("EUR", crossRateResponse.getFromCurrencyCode());
+    assertEquals("JPY", crossRateResponse.getToCurrencyCode());
+    assertTrue(crossRateResponse.getRate() > 100);
+    assertEquals(7, matrixResponse.getCurrencyCodesCount());
+    assertEquals(49, matrixResponse.getRatesCount());
+    assertEquals(1.0, matrixResponse.getRates(0));
+  }
+
+  @Test
+  void shouldStreamRatesOnEveryTick() {
+    StreamRatesRequest request = StreamRatesRequest.newBuilder().build();
+
+    List<CurrencyRateListResponse> responses = currencyRateService.streamRates(request)
+      .select().first(2)
+      .collect().asList()
+      .await().atMost(Duration.ofSeconds(5));
+
+    assertEquals(2, responses.size());
+    for (CurrencyRateListResponse response : responses) {
+      assertEquals(6, response.getCurrencyRatesCount());
+    }
+  }
+
+  @Test
+  void shouldStreamFilteredRates() {
+    StreamRatesRequest request = StreamRatesRequest.newBuilder()
+      .addCurrencyCodes("EUR")
+      .addCurrencyCodes("JPY")
+      .build();
+
+    CurrencyRateListResponse response = currencyRateService.streamRates(request)
+      .toUni()
+      .await().atMost(Duration.ofSeconds(5));
+
+    assertEquals(2, response.getCurrencyRatesCount());
+    assertTrue(response.getCurrencyRatesList().stream().allMatch(rate -> List.of("EUR", "JPY").contains(rate.getCurrencyCode())));
+  }
+
+  @Test
+  void shouldRejectStreamOfUnsupportedCurrency() throws Exception {
+    StreamRatesRequest request = StreamRatesRequest.newBuilder().addCurrencyCodes("XXX").build();
+
+    CompletableFuture<Throwable> failure = new CompletableFuture<>();
+    currencyRateService.streamRates(request).subscribe().with(
+      reply -> failure.completeExceptionally(new AssertionError("Unexpected rates")),
+      error -> failure.complete(error)
+    );
+
+    Throwable error = failure.get(5, TimeUnit.SECONDS);
+    assertInstanceOf(StatusRuntimeException.class, error);
+    assertEquals(Status.Code.INVALID_ARGUMENT, ((StatusRuntimeException) error).getStatus().getCode());
+  }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.pluralsight.currencyexchange.currency;
+
+import jakarta.enterprise.event.Event;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+class CurrencyRateSnapshotEngineTest {
+
+  private final MutableClock clock = new MutableClock(1_700_000_000_000L);
+  private final CurrencyRateSnapshotEngine engine = new CurrencyRateSnapshotEngine(clock, new SineRateProvider());
+
+  @Test
+  void shouldReuseSnapshotWithinTheSameTick() {
+    CurrencyRateSnapshot first = engine.current();
+
+    clock.millis = 1_700_000_000_999L;
+    CurrencyRateSnapshot second = engine.current();
+
+    assertSame(first, second);
+    assertSame(first.allRatesResponse(), second.allRatesResponse());
+    assertSame(first.rateResponse("EUR"), second.rateResponse("EUR"));
+  }
+
+  @Test
+  void shouldRecalculateSnapshotOnTickBoundary() {
+    CurrencyRateSnapshot first = engine.current();
+
+    clock.millis = 1_700_000_001_000L;
+    CurrencyRateSnapshot second = engine.current();
+
+    assertNotSame(first, second);
+    assertEquals(1_700_000_000L, first.epochSecond());
+    assertEquals(1_700_000_001L, second.epochSecond());
+    assertEquals(new SineRateProvider().rate("EUR", 1_700_000_001L).doubleValue(), second.rateResponse("EUR").getCurrencyRate().getRate());
+  }
+
+  @Test
+  void shouldNotGoBackInTime() {
+    clock.millis = 1_700_000_005_000L;
+    CurrencyRateSnapshot latest = engine.current();
+
+    clock.millis = 1_700_000_004_500L;
+
+    assertSame(latest, engine.current());
+  }
+
+  @Test
+  void shouldBuildAllRatesSortedByCurrency() {
+    CurrencyRateSnapshot snapshot = engine.current();
+
+    assertEquals(6, snapshot.allRatesResponse().getCurrencyRatesCount());
+    assertEquals("AUD", snapshot.allRatesResponse().getCurrencyRates(0).getCurrencyCode());
+    assertEquals("JPY", snapshot.allRatesResponse().getCurrencyRates(5).getCurrencyCode());
+    for (CurrencyRate currencyRate : snapshot.allRatesResponse().getCurrencyRatesList()) {
+      assertSame(currencyRate, snapshot.rateResponse(currencyRate.getCurrencyCode()).getCurrencyRate());
+      assertEquals("2023-11-14T22:13:20", currencyRate.getTimestamp());
+    }
+    assertNull(snapshot.rateResponse("XXX"));
+  }
+
+  @Test
+  void shouldFireEachSnapshotOnceInTickOrder() {
+    List<CurrencyRateSnapshot> fired = new ArrayList<>();
+    engine.snapshotEvent = recordingEvent(fired);
+
+    CurrencyRateSnapshot first = engine.current();
+    assertEquals(List.of(), fired);
+
+    engine.publish(first);
+    engine.publish(engine.current());
+    clock.millis = 1_700_000_001_000L;
+    CurrencyRateSnapshot second = engine.current();
+    engine.publish(second);
+    engine.publish(first);
+
+    assertEquals(List.of(first, second), fired);
+  }
+
+  /** An Event that only supports fire, recording each fired snapshot. */
+  @SuppressWarnings("unchecked")
+  private static Event<CurrencyRateSnapshot> recordingEvent(List<CurrencyRateSnapshot> fired) {
+    return (Event<CurrencyRateSnapshot>) Proxy.newProxyInstance(Event.class.getClassLoader(),
+        new Class<?>[] {Event.class}, (proxy, method, args) -> {
+          assertEquals("fire", method.getName());
+          fired.add((CurrencyRateSnapshot) args[0]);
+          return null;
+        });
+  }
+
+  static class MutableClock extends Clock {
+
+    volatile long millis;
+
+    MutableClock(long millis) {
+      this.millis = millis;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+}
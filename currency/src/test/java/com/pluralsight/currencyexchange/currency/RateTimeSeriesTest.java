@@ -0,0 +1,97 @@
+package com.pluralsight.currencyexchange.currency;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+class RateTimeSeriesTest {
+
+  @Test
+  void shouldReturnRatesInRange() {
+    RateTimeSeries timeSeries = new RateTimeSeries(60);
+    for (long second = 100; second < 110; second++) {
+      timeSeries.append(second, second / 100.0);
+    }
+
+    RateTimeSeries.Points points = timeSeries.range(103, 105);
+
+    assertArrayEquals(new long[]{103, 104, 105}, points.epochSeconds());
+    assertArrayEquals(new double[]{1.03, 1.04, 1.05}, points.rates());
+    assertEquals(0, timeSeries.range(200, Long.MAX_VALUE).size());
+    assertEquals(10, timeSeries.range(0, Long.MAX_VALUE).size());
+  }
+
+  @Test
+  void shouldEvictRatesOlderThanRetention() {
+    RateTimeSeries timeSeries = new RateTimeSeries(5);
+    for (long second = 0; second < 12; second++) {
+      timeSeries.append(second, 1.0);
+    }
+
+    RateTimeSeries.Points points = timeSeries.range(0, Long.MAX_VALUE);
+
+    assertEquals(5, timeSeries.size());
+    assertArrayEquals(new long[]{7, 8, 9, 10, 11}, points.epochSeconds());
+  }
+
+  @Test
+  void shouldIgnoreOutOfOrderTicks() {
+    RateTimeSeries timeSeries = new RateTimeSeries(60);
+    timeSeries.append(10, 1.0);
+    timeSeries.append(10, 2.0);
+    timeSeries.append(9, 3.0);
+
+    assertArrayEquals(new double[]{1.0}, timeSeries.range(0, Long.MAX_VALUE).rates());
+  }
+
+  @Test
+  void shouldMaintainMinuteCandlesIncrementally() {
+    RateTimeSeries timeSeries = new RateTimeSeries(3_600);
+    // First minute goes 1.0 -> 3.0 -> 0.5 -> 2.0, second minute starts at 4.0
+    timeSeries.append(60, 1.0);
+    timeSeries.append(70, 3.0);
+    timeSeries.append(80, 0.5);
+    timeSeries.append(119, 2.0);
+    timeSeries.append(120, 4.0);
+
+    CandleSeries.Candles candles = timeSeries.candles(CandleResolution.ONE_MINUTE, 0, Long.MAX_VALUE);
+
+    assertArrayEquals(new long[]{60, 120}, candles.openEpochSeconds());
+    assertArrayEquals(new double[]{1.0, 4.0}, candles.open());
+    assertArrayEquals(new double[]{3.0, 4.0}, candles.high());
+    assertArrayEquals(new double[]{0.5, 4.0}, candles.low());
+    assertArrayEquals(new double[]{2.0, 4.0}, candles.close());
+  }
+
+  @Test
+  void shouldReturnCandlesOpenedInRange() {
+    RateTimeSeries timeSeries = new RateTimeSeries(4 * 3_600);
+    for (long second = 0; second < 3 * 3_600; second += 30) {
+      timeSeries.append(second, second);
+    }
+
+    CandleSeries.Candles hours = timeSeries.candles(CandleResolution.ONE_HOUR, 0, Long.MAX_VALUE);
+    CandleSeries.Candles minutes = timeSeries.candles(CandleResolution.ONE_MINUTE, 90, 200);
+    CandleSeries.Candles seconds = timeSeries.candles(CandleResolution.ONE_SECOND, 90, 200);
+
+    assertArrayEquals(new long[]{0, 3_600, 7_200}, hours.openEpochSeconds());
+    assertArrayEquals(new double[]{3_570, 7_170, 10_770}, hours.close());
+    // The candle opened at 60 contains 90, so it is part of the range
+    assertArrayEquals(new long[]{60, 120, 180}, minutes.openEpochSeconds());
+    assertArrayEquals(new long[]{90, 120, 150, 180}, seconds.openEpochSeconds());
+    assertArrayEquals(seconds.open(), seconds.close());
+  }
+
+  @Test
+  void shouldBoundCandlesByRetention() {
+    RateTimeSeries timeSeries = new RateTimeSeries(600);
+    for (long second = 0; second < 3_600; second++) {
+      timeSeries.append(second, 1.0);
+    }
+
+    CandleSeries.Candles minutes = timeSeries.candles(CandleResolution.ONE_MINUTE, 0, Long.MAX_VALUE);
+
+    assertEquals(12, minutes.size());
+    assertEquals(3_540, minutes.openEpochSeconds()[minutes.size() - 1]);
+  }
+}
@@ -0,0 +1,126 @@
+package com.pluralsight.currencyexchange.currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.IntStream;
+
+class ReplayRateProviderTest {
+
+  private static final long START = 1_700_000_000L;
+
+  @TempDir
+  Path directory;
+
+  private TickFile tickFile;
+
+  @BeforeEach
+  void recordTicks() throws IOException {
+    Path path = directory.resolve("ticks.bin");
+    // EUR ticks every 500ms for 10 seconds, JPY only once
+    try (TickFile.Writer writer = TickFile.writer(path, List.of("EUR", "JPY"))) {
+      writer.append(0, "JPY", 150.123);
+      for (int i = 0; i < 20; i++) {
+        writer.append(i * 500L, "EUR", 0.9 + i / 1_000.0);
+      }
+    }
+    tickFile = TickFile.open(path);
+  }
+
+  @Test
+  void shouldReadRecordsFromMappedFile() {
+    assertEquals(List.of("EUR", "JPY"), tickFile.currencyCodes());
+    assertEquals(21, tickFile.recordCount());
+    assertEquals(1_000, tickFile.epochMillis(3));
+    assertEquals(0, tickFile.currencyIndex(3));
+    assertEquals(0.902, tickFile.rate(3));
+  }
+
+  @Test
+  void shouldReplayInRealTime() {
+    ReplayRateProvider provider = new ReplayRateProvider(tickFile, 1, false);
+
+    assertEquals(new BigDecimal("0.9000"), provider.rate("EUR", START));
+    assertEquals(new BigDecimal("150.12"), provider.rate("JPY", START));
+    assertEquals(new BigDecimal("0.9020"), provider.rate("EUR", START + 1));
+    assertEquals(new BigDecimal("0.9100"), provider.rate("EUR", START + 5));
+  }
+
+  @Test
+  void shouldReplayAcceleratedAndStopAtTheEnd() {
+    ReplayRateProvider provider = new ReplayRateProvider(tickFile, 4, false);
+
+    provider.rate("EUR", START);
+    assertEquals(new BigDecimal("0.9080"), provider.rate("EUR", START + 1));
+    assertEquals(new BigDecimal("0.9190"), provider.rate("EUR", START + 100));
+  }
+
+  @Test
+  void shouldLoopBackToTheStart() {
+    ReplayRateProvider provider = new ReplayRateProvider(tickFile, 1, true);
+
+    provider.rate("EUR", START);
+    assertEquals(new BigDecimal("0.9180"), provider.rate("EUR", START + 9));
+    // The file lasts 9.501 seconds, so 10 seconds in the replay is back at 0.499
+    assertEquals(new BigDecimal("0.9000"), provider.rate("EUR", START + 10));
+  }
+
+  @Test
+  void shouldFallBackOnBaseRateOfUnrecordedCurrency() {
+    ReplayRateProvider provider = new ReplayRateProvider(tickFile, 1, false);
+
+    assertEquals(CurrencyRateData.EXCHANGE_RATES.get("GBP"), provider.rate("GBP", START));
+  }
+
+  @Test
+  void shouldRejectFileWithoutHeader() throws IOException {
+    Path path = Files.write(directory.resolve("empty.bin"), new byte[16]);
+
+    assertThrows(IllegalArgumentException.class, () -> TickFile.open(path));
+  }
+
+  @Test
+  void shouldRejectFileShorterThanHeader() throws IOException {
+    Path tooShort = Files.write(directory.resolve("short.bin"), new byte[] {'T', 'I', 'C', 'K'});
+    Path truncated = Files.write(directory.resolve("truncated.bin"), new byte[] {'T', 'I', 'C', 'K', TickFile.VERSION, 2, 'E', 'U', 'R'});
+
+    assertThrows(IllegalArgumentException.class, () -> TickFile.open(tooShort));
+    assertThrows(IllegalArgumentException.class, () -> TickFile.open(truncated));
+  }
+
+  @Test
+  void shouldIgnoreRecordOfUndeclaredCurrency() throws IOException {
+    Path path = directory.resolve("corrupted.bin");
+    try (TickFile.Writer writer = TickFile.writer(path, List.of("EUR"))) {
+      writer.append(0, "EUR", 0.9);
+    }
+    // Currency index 200 is a negative byte, past the single declared currency
+    ByteBuffer record = ByteBuffer.allocate(TickFile.RECORD_SIZE).putLong(0).put((byte) 200).putDouble(1.5);
+    Files.write(path, record.array(), StandardOpenOption.APPEND);
+    TickFile corrupted = TickFile.open(path);
+
+    assertEquals(200, corrupted.currencyIndex(1));
+    assertEquals(new BigDecimal("0.9000"), new ReplayRateProvider(corrupted, 1, false).rate("EUR", START));
+  }
+
+  @Test
+  void shouldRejectInvalidCurrencies() {
+    Path path = directory.resolve("invalid.bin");
+    List<String> tooMany = IntStream.rangeClosed(0, TickFile.MAX_CURRENCIES).mapToObj(i -> String.format("%03d", i)).toList();
+
+    assertThrows(IllegalArgumentException.class, () -> TickFile.writer(path, tooMany));
+    assertThrows(IllegalArgumentException.class, () -> TickFile.writer(path, List.of("EURO")));
+    assertThrows(IllegalArgumentException.class, () -> TickFile.writer(path, List.of("EU")));
+    assertThrows(IllegalArgumentException.class, () -> TickFile.writer(path, List.of("ÉUR")));
+  }
+}
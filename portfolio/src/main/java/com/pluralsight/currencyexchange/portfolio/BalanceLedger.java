@@ -0,0 +1,124 @@
+package com.pluralsight.currencyexchange.portfolio;
+
+import com.pluralsight.currencyexchange.portfolio.trade.Trade;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Currency balances of the users, starting from {@link User#USER_PORTFOLIOS}. Each user has one slot per currency,
+ * indexed by {@link CurrencyCode} ordinal, holding the balance in tenths (balances are rounded to 1 decimal).
+ * Trades credit a slot with a single atomic add, so concurrent trades of a user never lose an update and
+ * never wait for each other, and reads copy the slots into a new list.
+ * Only the currencies a user holds are credited, as before.
+ */
+@ApplicationScoped
+public class BalanceLedger {
+
+  /**
+   * Currencies with a slot, in alphabetical order so the slots are read sorted.
+   */
+  enum CurrencyCode {
+    AUD, CAD, CHF, EUR, GBP, JPY;
+
+    private static final CurrencyCode[] VALUES = values();
+
+    static CurrencyCode of(String code) {
+      for (CurrencyCode currency : VALUES) {
+        if (currency.name().equals(code)) {
+          return currency;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final int SLOTS = CurrencyCode.VALUES.length;
+
+  // Built once, then only the slots change
+  private final Map<String, Account> accounts;
+
+  BalanceLedger() {
+    this(User.USER_PORTFOLIOS);
+  }
+
+  BalanceLedger(Map<String, List<Portfolio>> initialPortfolios) {
+    Map<String, Account> accounts = new HashMap<>();
+    initialPortfolios.forEach((userId, portfolios) -> accounts.put(userId, new Account(portfolios)));
+    this.accounts = Map.copyOf(accounts);
+  }
+
+  /**
+   * Adds the amount, rounded to 1 decimal, to the balance of the user in the currency.
+   * Returns false when the user does not hold the currency.
+   */
+  public boolean credit(String userId, String currencyCode, BigDecimal amount) {
+    Account account = accounts.get(userId);
+    CurrencyCode currency = CurrencyCode.of(currencyCode);
+    if (account == null || currency == null || account.ids[currency.ordinal()] == null) {
+      return false;
+    }
+    int slot = currency.ordinal();
+    account.tenths.addAndGet(slot, amount.movePointRight(1).setScale(0, RoundingMode.HALF_UP).longValueExact());
+    account.updatedMillis.accumulateAndGet(slot, System.currentTimeMillis(), Math::max);
+    return true;
+  }
+
+  /**
+   * Credits the user with the converted amount of the trade, in its target currency.
+   */
+  public boolean credit(Trade trade) {
+    return credit(trade.userId(), trade.toCurrency(), trade.usdAmount().multiply(trade.exchangeRate()));
+  }
+
+  /**
+   * Balances of the user sorted by currency, as of now.
+   */
+  public List<Portfolio> portfolios(String userId) {
+    Account account = accounts.get(userId);
+    if (account == null) {
+      return List.of();
+    }
+    List<Portfolio> portfolios = new ArrayList<>(SLOTS);
+    for (CurrencyCode currency : CurrencyCode.VALUES) {
+      int slot = currency.ordinal();
+      if (account.ids[slot] != null) {
+        portfolios.add(new Portfolio(account.ids[slot], account.user, currency.name(),
+          BigDecimal.valueOf(account.tenths.get(slot), 1),
+          LocalDateTime.ofInstant(Instant.ofEpochMilli(account.updatedMillis.get(slot)), ZoneId.systemDefault())));
+      }
+    }
+    return portfolios;
+  }
+
+  private static final class Account {
+
+    final User user;
+    final Long[] ids = new Long[SLOTS];   // Portfolio of each slot, null when the currency is not held
+    final AtomicLongArray tenths = new AtomicLongArray(SLOTS);
+    final AtomicLongArray updatedMillis = new AtomicLongArray(SLOTS);
+
+    Account(List<Portfolio> portfolios) {
+      this.user = portfolios.isEmpty() ? null : portfolios.getFirst().user();
+      for (Portfolio portfolio : portfolios) {
+        CurrencyCode currency = CurrencyCode.of(portfolio.currency());
+        if (currency == null) {
+          throw new IllegalArgumentException("Unsupported portfolio currency: " + portfolio.currency());
+        }
+        int slot = currency.ordinal();
+        ids[slot] = portfolio.id();
+        tenths.set(slot, portfolio.balance().movePointRight(1).setScale(0, RoundingMode.HALF_UP).longValueExact());
+        updatedMillis.set(slot, portfolio.lastUpdated().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+      }
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.pluralsight.currencyexchange.portfolio;
+
+import com.pluralsight.currencyexchange.currency.CurrencyRate;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Currency rates served from the {@link CurrencyRateCache}, stale when the currency service
+ * has not sent newer ones for a while. The version changes with every update of the rates, 0 when there are none.
+ */
+public record CachedRates(List<CurrencyRate> rates, Instant receivedAt, boolean stale, long version) {
+}
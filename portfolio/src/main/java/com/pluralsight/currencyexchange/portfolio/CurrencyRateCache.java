@@ -0,0 +1,167 @@
+package com.pluralsight.currencyexchange.portfolio;
+
+import com.google.protobuf.Empty;
+import com.pluralsight.currencyexchange.currency.CurrencyRate;
+import com.pluralsight.currencyexchange.currency.CurrencyRateListResponse;
+import com.pluralsight.currencyexchange.currency.CurrencyRateService;
+import com.pluralsight.currencyexchange.currency.StreamRatesRequest;
+import io.quarkus.grpc.GrpcClient;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.subscription.Cancellable;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latest currency rates, fed by the {@code StreamRates} subscription to the currency service, so reads are served
+ * from memory. When the stream fails, it is resubscribed with a backoff, and the last rates received are still served,
+ * flagged as stale once older than {@code portfolio.rates.max-age}, and no longer traded at. Reads never wait for
+ * the currency service: before the first rates are received, they fail while the rates are requested in the background.
+ */
+@ApplicationScoped
+public class CurrencyRateCache {
+
+  private static final Logger LOG = Logger.getLogger(CurrencyRateCache.class);
+
+  @GrpcClient("currency")
+  CurrencyRateService currencyService;
+
+  @Inject
+  DependencyHealth dependencyHealth;
+
+  @ConfigProperty(name = "portfolio.rates.max-age", defaultValue = "3s")
+  Duration maxAge;
+
+  @ConfigProperty(name = "portfolio.rates.retry-max-backoff", defaultValue = "30s")
+  Duration retryMaxBackoff;
+
+  private final Clock clock;
+  private volatile Snapshot snapshot;
+  private final AtomicBoolean requesting = new AtomicBoolean();
+  private final AtomicLong versions = new AtomicLong();
+  private Cancellable subscription;
+
+  CurrencyRateCache() {
+    this(Clock.systemUTC());
+  }
+
+  CurrencyRateCache(Duration maxAge, Clock clock) {
+    this(clock);
+    this.maxAge = maxAge;
+    this.dependencyHealth = new DependencyHealth(maxAge, clock);
+  }
+
+  private CurrencyRateCache(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Rates received at the same time, indexed by currency code.
+   */
+  private record Snapshot(List<CurrencyRate> rates, Map<String, CurrencyRate> ratesByCurrency, Instant receivedAt, long version) {
+  }
+
+  void subscribe(@Observes StartupEvent event) {
+    subscription = currencyService.streamRates(StreamRatesRequest.getDefaultInstance())
+      .onCompletion().failWith(() -> new IllegalStateException("Rate stream completed"))
+      .onFailure().invoke(failure -> {
+        LOG.warn("Rate stream failed, serving the last rates received: " + failure.getMessage());
+        dependencyHealth.down(DependencyHealth.Dependency.CURRENCY, failure.getMessage());
+      })
+      .onFailure().retry().withBackOff(Duration.ofSeconds(1), retryMaxBackoff).indefinitely()
+      .subscribe().with(this::update);
+  }
+
+  @PreDestroy
+  void unsubscribe() {
+    if (subscription != null) {
+      subscription.cancel();
+    }
+  }
+
+  synchronized void update(CurrencyRateListResponse response) {
+    Map<String, CurrencyRate> ratesByCurrency = new HashMap<>();
+    for (CurrencyRate rate : response.getCurrencyRatesList()) {
+      ratesByCurrency.put(rate.getCurrencyCode(), rate);
+    }
+    snapshot = new Snapshot(response.getCurrencyRatesList(), Map.copyOf(ratesByCurrency), clock.instant(), versions.incrementAndGet());
+    dependencyHealth.up(DependencyHealth.Dependency.CURRENCY);
+  }
+
+  /**
+   * All the latest rates.
+   */
+  public CachedRates rates() {
+    Snapshot current = current();
+    return new CachedRates(current.rates(), current.receivedAt(), isStale(current), current.version());
+  }
+
+  /**
+   * Latest rate of a currency to trade at: refused once stale, so a trade is never executed at a rate the
+   * currency service stopped sending.
+   */
+  public CurrencyRate rate(String currencyCode) {
+    Snapshot current = current();
+    if (isStale(current)) {
+      throw new IllegalStateException("Stale currency rates, received at " + current.receivedAt());
+    }
+    CurrencyRate rate = current.ratesByCurrency().get(currencyCode);
+    if (rate == null) {
+      throw new IllegalArgumentException("Unsupported currency: " + currencyCode);
+    }
+    return rate;
+  }
+
+  private Snapshot current() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      requestRates();
+      current = snapshot;
+      if (current == null) {
+        throw new IllegalStateException("No currency rates received yet");
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Asks for the current rates once, in case the stream is not connected yet.
+   */
+  private void requestRates() {
+    if (!requesting.compareAndSet(false, true)) {
+      return;
+    }
+    LOG.info("No currency rates received yet, requesting them from the currency service");
+    currencyService.getAllCurrentRates(Empty.getDefaultInstance())
+      .onTermination().invoke(() -> requesting.set(false))
+      .subscribe().with(this::updateIfEmpty, failure -> {
+        LOG.warn("Cannot get currency rates: " + failure.getMessage());
+        dependencyHealth.down(DependencyHealth.Dependency.CURRENCY, failure.getMessage());
+      });
+  }
+
+  // The stream may have delivered newer rates while the request was in flight, they are kept
+  private synchronized void updateIfEmpty(CurrencyRateListResponse response) {
+    if (snapshot == null) {
+      update(response);
+    } else {
+      dependencyHealth.up(DependencyHealth.Dependency.CURRENCY);
+    }
+  }
+
+  private boolean isStale(Snapshot snapshot) {
+    return snapshot.receivedAt().plus(maxAge).isBefore(clock.instant());
+  }
+}
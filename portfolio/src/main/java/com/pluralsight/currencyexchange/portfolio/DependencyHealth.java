@@ -0,0 +1,162 @@
+package com.pluralsight.currencyexchange.portfolio;
+
+import com.google.protobuf.Empty;
+import com.pluralsight.currencyexchange.currency.CurrencyRateService;
+import com.pluralsight.currencyexchange.portfolio.trade.TradeProxy;
+import io.grpc.Channel;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.quarkus.grpc.GrpcClient;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest known status of the services the portfolio depends on, so readiness is answered from memory.
+ * A status is updated by a background check every {@code portfolio.health.check-interval}, by the outcome of the
+ * real calls to the service, and, for the currency service, by the state of the gRPC channel.
+ * A status older than {@code portfolio.health.max-age} is not trusted: the service is then reported as not ready.
+ */
+@ApplicationScoped
+public class DependencyHealth {
+
+  private static final Logger LOG = Logger.getLogger(DependencyHealth.class);
+
+  public enum Dependency {
+    CURRENCY, TRADES
+  }
+
+  /**
+   * Whether the dependency answered, when that was last observed, and why it did not.
+   */
+  public record Status(boolean up, Instant observedAt, String error) {
+  }
+
+  @GrpcClient("currency")
+  CurrencyRateService currencyService;
+
+  @GrpcClient("currency")
+  Channel currencyChannel;
+
+  @RestClient
+  TradeProxy tradeProxy;
+
+  @ConfigProperty(name = "portfolio.health.check-interval", defaultValue = "5s")
+  Duration checkInterval;
+
+  @ConfigProperty(name = "portfolio.health.max-age", defaultValue = "30s")
+  Duration maxAge;
+
+  private final Clock clock;
+  private volatile Status currency;
+  private volatile Status trades;
+  private ScheduledExecutorService checker;
+
+  DependencyHealth() {
+    this(Clock.systemUTC());
+  }
+
+  DependencyHealth(Duration maxAge, Clock clock) {
+    this(clock);
+    this.maxAge = maxAge;
+  }
+
+  private DependencyHealth(Clock clock) {
+    this.clock = clock;
+  }
+
+  void start(@Observes StartupEvent event) {
+    checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "dependency-health-checker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    checker.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    if (currencyChannel instanceof ManagedChannel managedChannel) {
+      watch(managedChannel, managedChannel.getState(false));
+    }
+  }
+
+  @PreDestroy
+  void stop() {
+    if (checker != null) {
+      checker.shutdownNow();
+    }
+  }
+
+  public void up(Dependency dependency) {
+    update(dependency, new Status(true, clock.instant(), null));
+  }
+
+  public void down(Dependency dependency, String error) {
+    update(dependency, new Status(false, clock.instant(), error));
+  }
+
+  /**
+   * Latest status of the dependency, null before the first observation.
+   */
+  public Status status(Dependency dependency) {
+    return dependency == Dependency.CURRENCY ? currency : trades;
+  }
+
+  /**
+   * Whether the dependency was up when last observed, no longer than the max age ago.
+   */
+  public boolean isReady(Dependency dependency) {
+    Status status = status(dependency);
+    return status != null && status.up() && !status.observedAt().plus(maxAge).isBefore(clock.instant());
+  }
+
+  /**
+   * Pings both services: the currency service without waiting for it, the trades service with the smallest page.
+   */
+  void check() {
+    currencyService.getAllCurrentRates(Empty.getDefaultInstance())
+      .ifNoItem().after(checkInterval).fail()
+      .subscribe().with(rates -> up(Dependency.CURRENCY), failure -> down(Dependency.CURRENCY, failure.getMessage()));
+
+    try {
+      tradeProxy.getRecentTrades("readiness-check", 1, "desc");
+      up(Dependency.TRADES);
+    } catch (RuntimeException e) {
+      down(Dependency.TRADES, e.getMessage());
+    }
+  }
+
+  private void watch(ManagedChannel channel, ConnectivityState state) {
+    channel.notifyWhenStateChanged(state, () -> {
+      ConnectivityState newState = channel.getState(false);
+      if (newState == ConnectivityState.READY) {
+        up(Dependency.CURRENCY);
+      } else if (newState == ConnectivityState.TRANSIENT_FAILURE) {
+        down(Dependency.CURRENCY, "gRPC channel in " + newState);
+      }
+      if (newState != ConnectivityState.SHUTDOWN) {
+        watch(channel, newState);
+      }
+    });
+  }
+
+  private void update(Dependency dependency, Status status) {
+    Status previous = status(dependency);
+    if (dependency == Dependency.CURRENCY) {
+      currency = status;
+    } else {
+      trades = status;
+    }
+    if (previous == null || previous.up() != status.up()) {
+      LOG.info(dependency + " service is " + (status.up() ? "up" : "down: " + status.error()));
+    }
+  }
+}
@@ -1,65 +1,53 @@
 package com.pluralsight.currencyexchange.portfolio;
 
-import com.google.protobuf.Empty;
-import com.pluralsight.currencyexchange.currency.CurrencyRateServiceGrpc;
-import com.pluralsight.currencyexchange.portfolio.trade.TradeProxy;
-import io.quarkus.grpc.GrpcClient;
+import com.pluralsight.currencyexchange.portfolio.DependencyHealth.Dependency;
+import com.pluralsight.currencyexchange.portfolio.DependencyHealth.Status;
+import io.smallrye.health.api.AsyncHealthCheck;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
-import org.eclipse.microprofile.health.HealthCheck;
+import jakarta.inject.Inject;
 import org.eclipse.microprofile.health.HealthCheckResponse;
 import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
 import org.eclipse.microprofile.health.Readiness;
-import org.eclipse.microprofile.rest.client.inject.RestClient;
-import org.jboss.logging.Logger;
 
 /**
  * Readiness health check for the Portfolio Service.
- * Verifies that both external dependencies (Currency gRPC service and Trades REST service)
- * can be successfully invoked before marking the Portfolio service as ready.
+ * Ready when both external dependencies (Currency gRPC service and Trades REST service) were last seen up,
+ * recently enough. Answered in constant time from {@link DependencyHealth}, without calling them.
  */
 @Readiness
 @ApplicationScoped
-public class PortfolioReadinessCheck implements HealthCheck {
+public class PortfolioReadinessCheck implements AsyncHealthCheck {
 
-  private static final Logger LOG = Logger.getLogger(PortfolioReadinessCheck.class);
-
-  @GrpcClient("currency")
-  CurrencyRateServiceGrpc.CurrencyRateServiceBlockingStub currencyStub;
-
-  @RestClient
-  TradeProxy tradeProxy;
+  @Inject
+  DependencyHealth dependencyHealth;
 
   @Override
-  public HealthCheckResponse call() {
-    HealthCheckResponseBuilder responseBuilder = HealthCheckResponse.named("Portfolio Service Readiness");
-
-    boolean currencyServiceReady = false;
-    boolean tradesServiceReady = false;
+  public Uni<HealthCheckResponse> call() {
+    return Uni.createFrom().item(this::response);
+  }
 
-    // Ping Currency Service (gRPC)
-    try {
-      currencyStub.getAllCurrentRates(Empty.newBuilder().build());
-      currencyServiceReady = true;
-    } catch (Exception e) {
-      LOG.warn("Currency service ping failed: " + e.getMessage());
-    }
-
-    // Ping Trades Service (REST)
-    try {
-      tradeProxy.getAllTrades("readiness-check");
-      tradesServiceReady = true;
-    } catch (Exception e) {
-      LOG.warn("Trades service ping failed: " + e.getMessage());
-    }
+  HealthCheckResponse response() {
+    boolean currencyReady = dependencyHealth.isReady(Dependency.CURRENCY);
+    boolean tradesReady = dependencyHealth.isReady(Dependency.TRADES);
 
     // Portfolio is ready only if both services are reachable
-    boolean isReady = currencyServiceReady && tradesServiceReady;
-
-    responseBuilder
-      .status(isReady)
-      .withData("currencyServiceReady", currencyServiceReady)
-      .withData("tradesServiceReady", tradesServiceReady);
+    HealthCheckResponseBuilder response = HealthCheckResponse.named("Portfolio Service Readiness")
+      .status(currencyReady && tradesReady)
+      .withData("currencyServiceReady", currencyReady)
+      .withData("tradesServiceReady", tradesReady);
+    withStatus(response, "currencyService", dependencyHealth.status(Dependency.CURRENCY));
+    withStatus(response, "tradesService", dependencyHealth.status(Dependency.TRADES));
+    return response.build();
+  }
 
-    return responseBuilder.build();
+  private static void withStatus(HealthCheckResponseBuilder response, String prefix, Status status) {
+    if (status == null) {
+      return;
+    }
+    response.withData(prefix + "ObservedAt", status.observedAt().toString());
+    if (status.error() != null) {
+      response.withData(prefix + "Error", status.error());
+    }
   }
 }
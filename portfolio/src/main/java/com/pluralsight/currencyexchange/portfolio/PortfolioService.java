@@ -1,16 +1,12 @@
 package com.pluralsight.currencyexchange.portfolio;
 
-import com.google.protobuf.Empty;
 import com.pluralsight.currencyexchange.currency.CurrencyRate;
-import com.pluralsight.currencyexchange.currency.CurrencyRateServiceGrpc;
-import com.pluralsight.currencyexchange.currency.CurrencyRequest;
-import static com.pluralsight.currencyexchange.portfolio.User.USER_PORTFOLIOS;
 import com.pluralsight.currencyexchange.portfolio.trade.Trade;
+import com.pluralsight.currencyexchange.portfolio.trade.TradeOutbox;
 import com.pluralsight.currencyexchange.portfolio.trade.TradeProxy;
 import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.quarkus.grpc.GrpcClient;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -19,11 +15,6 @@ import org.eclipse.microprofile.faulttolerance.Retry;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.logging.Logger;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 @ApplicationScoped
@@ -31,44 +22,78 @@ public class PortfolioService {
 
   private static final Logger LOG = Logger.getLogger(PortfolioService.class);
 
-  @GrpcClient("currency")
-  CurrencyRateServiceGrpc.CurrencyRateServiceBlockingStub currencyStub;
+  // Trades shown on the portfolio page, the most recent ones
+  static final int RECENT_TRADES = 50;
+
+  @Inject
+  CurrencyRateCache rateCache;
+
+  @Inject
+  BalanceLedger balanceLedger;
 
   @RestClient
   TradeProxy tradeProxy;
 
+  @Inject
+  TradeOutbox tradeOutbox;
+
+  @Inject
+  DependencyHealth dependencyHealth;
+
   @Inject
   MeterRegistry meterRegistry;
 
   Counter fallbackCounter;
 
+  Counter staleRatesCounter;
+
   @PostConstruct
   void init() {
     fallbackCounter = meterRegistry.counter("mymetric_portfolio_fallback");
+    staleRatesCounter = meterRegistry.counter("mymetric_portfolio_stale_rates");
   }
 
   @Fallback(fallbackMethod = "fallbackGetAllCurrencyRates")
   @Timed(value = "mymetric_portfolio_getAllCurrencyRates")
   public List<CurrencyRate> getAllCurrencyRates() {
+    return getCachedRates().rates();
+  }
+
+  /**
+   * Latest rates received from the currency service, flagged as stale when it stopped sending them.
+   */
+  @Fallback(fallbackMethod = "fallbackGetCachedRates")
+  @Timed(value = "mymetric_portfolio_getCachedRates")
+  public CachedRates getCachedRates() {
     LOG.info("Get all currency rates");
 
-    return currencyStub.getAllCurrentRates(Empty.newBuilder().build()).getCurrencyRatesList();
+    CachedRates rates = rateCache.rates();
+    if (rates.stale()) {
+      LOG.warn("Serving stale currency rates received at " + rates.receivedAt());
+      staleRatesCounter.increment();
+    }
+    return rates;
   }
 
-  @Fallback(fallbackMethod = "fallbackGetCurrencyRate")
+  /**
+   * Latest rate of the currency, without fallback: a trade is never executed at a made-up or stale rate.
+   */
   @Timed(value = "mymetric_portfolio_getCurrencyRate")
   public CurrencyRate getCurrencyRate(String currencyCode) {
     LOG.info("Get currency rate: " + currencyCode);
 
-    return currencyStub.getCurrentRate(CurrencyRequest.newBuilder().setCurrencyCode(currencyCode).build()).getCurrencyRate();
+    return rateCache.rate(currencyCode);
   }
 
+  @Retry(maxRetries = 2, delay = 100)
   @Fallback(fallbackMethod = "fallbackExecuteTrade")
   @Timed(value = "mymetric_portfolio_executeTrade")
   public void executeTrade(Trade trade) {
     LOG.info("Execute trade: " + trade);
 
-    tradeProxy.executeTrade(trade);
+    // Retries carry the same key, so the trades service executes the trade only once
+    tradeProxy.executeTrade(trade.idempotencyKey(), trade);
+    dependencyHealth.up(DependencyHealth.Dependency.TRADES);
     updateUserPortfolio(trade);
   }
 
@@ -77,84 +102,49 @@ public class PortfolioService {
   public List<Trade> getAllTrades(String userId) {
     LOG.info("Get all trades");
 
-    return tradeProxy.getAllTrades(userId);
+    // Only the latest page of the history, back in execution order
+    List<Trade> trades = tradeProxy.getRecentTrades(userId, RECENT_TRADES, "desc");
+    dependencyHealth.up(DependencyHealth.Dependency.TRADES);
+    return trades.reversed();
   }
 
   public List<CurrencyRate> fallbackGetAllCurrencyRates() {
-    LOG.warn("Falling back on get all currency rates");
-    fallbackCounter.increment();
-    return List.of(
-      CurrencyRate.newBuilder().setCurrencyCode("AUD").setRate(0).build(),
-      CurrencyRate.newBuilder().setCurrencyCode("CAD").setRate(0).build(),
-      CurrencyRate.newBuilder().setCurrencyCode("CHF").setRate(0).build(),
-      CurrencyRate.newBuilder().setCurrencyCode("EUR").setRate(0).build(),
-      CurrencyRate.newBuilder().setCurrencyCode("GBP").setRate(0).build(),
-      CurrencyRate.newBuilder().setCurrencyCode("JPY").setRate(0).build()
-    );
+    return fallbackGetCachedRates().rates();
   }
 
-  public CurrencyRate fallbackGetCurrencyRate(String currencyCode) {
-    LOG.warn("Falling back on get currency rate: " + currencyCode);
+  public CachedRates fallbackGetCachedRates() {
+    // Only when no rate was ever received: no rates rather than zero rates
+    LOG.warn("Falling back on get all currency rates");
     fallbackCounter.increment();
 
-    return CurrencyRate.newBuilder().setCurrencyCode(currencyCode).setRate(0).build();
+    return new CachedRates(List.of(), null, true, 0);
   }
 
-  private static final List<Trade> FALLBACK_TRADES = new ArrayList<>();
-
   public void fallbackExecuteTrade(Trade trade) {
-    LOG.warn("Falling back on execute trade: " + trade);
+    LOG.warn("Falling back on execute trade, queued until the trades service is back: " + trade);
     fallbackCounter.increment();
+    dependencyHealth.down(DependencyHealth.Dependency.TRADES, "Execute trade failed");
 
-    FALLBACK_TRADES.add(trade);
+    tradeOutbox.enqueue(trade);
   }
 
   public List<Trade> fallbackGetAllTrades(String userId) {
     LOG.warn("Falling back on get all trades");
     fallbackCounter.increment();
+    dependencyHealth.down(DependencyHealth.Dependency.TRADES, "Get all trades failed");
 
-    return FALLBACK_TRADES;
+    // Only the trades of the user still waiting for the trades service
+    return tradeOutbox.pending(userId);
   }
 
   public List<Portfolio> getUserPortfolio(String userId) {
     LOG.info("Get portfolio for user " + userId);
 
-    return USER_PORTFOLIOS.getOrDefault(userId, List.of())
-      .stream()
-      .sorted(Comparator.comparing(Portfolio::currency))
-      .toList();
+    return balanceLedger.portfolios(userId);
   }
 
-  private static void updateUserPortfolio(Trade trade) {
-    // Update user portfolio balance for the target currency
-    List<Portfolio> userPortfolios = USER_PORTFOLIOS.get(trade.userId());
-    if (userPortfolios != null) {
-      // Calculate converted amount
-      BigDecimal convertedAmount = trade.usdAmount().multiply(trade.exchangeRate());
-
-      // Find the portfolio entry for the target currency
-      Portfolio targetPortfolio = userPortfolios.stream()
-        .filter(p -> p.currency().equals(trade.toCurrency()))
-        .findFirst()
-        .orElse(null);
-
-      if (targetPortfolio != null) {
-        // Update the balance by adding the converted amount (rounded to 1 decimal)
-        BigDecimal newBalance = targetPortfolio.balance()
-          .add(convertedAmount)
-          .setScale(1, RoundingMode.HALF_UP);
-        Portfolio updatedPortfolio = new Portfolio(
-          targetPortfolio.id(),
-          targetPortfolio.user(),
-          targetPortfolio.currency(),
-          newBalance,
-          java.time.LocalDateTime.now()
-        );
-
-        // Replace the old portfolio entry with the updated one
-        userPortfolios.remove(targetPortfolio);
-        userPortfolios.add(updatedPortfolio);
-      }
-    }
+  private void updateUserPortfolio(Trade trade) {
+    // Credit the user balance for the target currency with the converted amount
+    balanceLedger.credit(trade);
   }
 }
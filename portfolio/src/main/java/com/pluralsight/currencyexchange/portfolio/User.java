@@ -40,28 +40,41 @@ public record User(
   private static final User USER3 = new User(3L, "Bob", "Johnson", "bob.johnson@example.com",
     "378282246310005", YearMonth.of(2027, 3), "AMEX");
 
-  // Hard-coded portfolios for each user (mutable for trade updates)
+  // Hard-coded initial portfolios for each user (trades then update the BalanceLedger)
   public static final Map<String, List<Portfolio>> USER_PORTFOLIOS = Map.of(
-    "john.doe@example.com", new java.util.ArrayList<>(List.of(
+    "john.doe@example.com", List.of(
       new Portfolio(2L, USER1, "EUR", BigDecimal.valueOf(85.0), LocalDateTime.now()),
       new Portfolio(3L, USER1, "GBP", BigDecimal.valueOf(50.0), LocalDateTime.now()),
       new Portfolio(4L, USER1, "JPY", BigDecimal.valueOf(100.0), LocalDateTime.now()),
       new Portfolio(5L, USER1, "CHF", BigDecimal.valueOf(90.0), LocalDateTime.now()),
       new Portfolio(6L, USER1, "CAD", BigDecimal.valueOf(120.0), LocalDateTime.now()),
       new Portfolio(7L, USER1, "AUD", BigDecimal.valueOf(110.0), LocalDateTime.now())
-    )),
-    "jane.smith@example.com", new java.util.ArrayList<>(List.of(
+    ),
+    "jane.smith@example.com", List.of(
       new Portfolio(9L, USER2, "EUR", BigDecimal.valueOf(170.0), LocalDateTime.now()),
       new Portfolio(10L, USER2, "GBP", BigDecimal.valueOf(150.0), LocalDateTime.now()),
       new Portfolio(11L, USER2, "JPY", BigDecimal.valueOf(20.0), LocalDateTime.now()),
       new Portfolio(12L, USER2, "CHF", BigDecimal.valueOf(180.0), LocalDateTime.now())
-    )),
-    "bob.johnson@example.com", new java.util.ArrayList<>(List.of(
+    ),
+    "bob.johnson@example.com", List.of(
       new Portfolio(16L, USER3, "EUR", BigDecimal.valueOf(42.0), LocalDateTime.now()),
       new Portfolio(17L, USER3, "GBP", BigDecimal.valueOf(37.0), LocalDateTime.now()),
       new Portfolio(18L, USER3, "JPY", BigDecimal.valueOf(50.0), LocalDateTime.now()),
       new Portfolio(19L, USER3, "CHF", BigDecimal.valueOf(45.0), LocalDateTime.now()),
       new Portfolio(21L, USER3, "AUD", BigDecimal.valueOf(55.0), LocalDateTime.now())
-    ))
+    )
   );
-}
\ No newline at end of file
+
+  private static final Map<String, User> USERS_BY_EMAIL = Map.of(
+    USER1.email(), USER1,
+    USER2.email(), USER2,
+    USER3.email(), USER3
+  );
+
+  /**
+   * The user signing in with the email, null when unknown.
+   */
+  public static User byEmail(String email) {
+    return USERS_BY_EMAIL.get(email);
+  }
+}
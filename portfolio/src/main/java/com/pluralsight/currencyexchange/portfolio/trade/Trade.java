@@ -1,7 +1,9 @@
 package com.pluralsight.currencyexchange.portfolio.trade;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 public record Trade(
 
@@ -26,5 +28,12 @@ public record Trade(
   public Trade(String email, BigDecimal usdAmount, String toCurrency, double rate) {
     this(email, LocalDateTime.now(), usdAmount, toCurrency, null, BigDecimal.valueOf(rate), "CREATED");
   }
-}
 
+  /**
+   * Key identifying this trade across retries, derived from what the user submitted.
+   */
+  public String idempotencyKey() {
+    String content = userId + '|' + timestamp + '|' + usdAmount + '|' + toCurrency + '|' + exchangeRate;
+    return UUID.nameUUIDFromBytes(content.getBytes(StandardCharsets.UTF_8)).toString();
+  }
+}
@@ -0,0 +1,549 @@
+package com.pluralsight.currencyexchange.portfolio.trade;
+
+import com.pluralsight.currencyexchange.portfolio.BalanceLedger;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Trades accepted while the trades service is unavailable, persisted to a local append-only file,
+ * and replayed to the trades service in batches once it is back.
+ * <pre>
+ * record: payload length (4 bytes) | payload | CRC32 of the payload (4 bytes)
+ * payload: ENQUEUED | sequence (8 bytes) | trade
+ *          DELIVERED | count (4 bytes) | sequences (8 bytes each)
+ * </pre>
+ * Pending trades are kept per user, up to {@code portfolio.outbox.max-trades-per-user} per user and
+ * {@code portfolio.outbox.max-trades} in total, so memory stays flat however long the outage: beyond, trades are refused.
+ * Records are on disk before returning, and a failed write is truncated right away so later records stay replayable.
+ * The file is truncated once every trade is delivered, and rewritten with the pending trades only when it grows too large. Each trade of a batch is sent with its own idempotency key,
+ * the one it was first sent with, so a trade already executed before it was queued, or in a batch whose response
+ * was lost, is not executed twice. Once a batch is delivered, the user balances are credited with its executed trades.
+ * Without {@code portfolio.outbox.path}, pending trades are kept in memory only.
+ */
+@ApplicationScoped
+public class TradeOutbox {
+
+  private static final Logger LOG = Logger.getLogger(TradeOutbox.class);
+
+  private static final byte ENQUEUED = 1;
+  private static final byte DELIVERED = 2;
+  private static final int MAX_RECORD_SIZE = 1024 * 1024;
+  private static final long COMPACTION_SIZE = 8 * 1024 * 1024;
+
+  @ConfigProperty(name = "portfolio.outbox.path")
+  Optional<String> path;
+
+  @ConfigProperty(name = "portfolio.outbox.max-trades-per-user", defaultValue = "1000")
+  int maxTradesPerUser;
+
+  @ConfigProperty(name = "portfolio.outbox.max-trades", defaultValue = "10000")
+  int maxTrades;
+
+  @ConfigProperty(name = "portfolio.outbox.batch-size", defaultValue = "100")
+  int batchSize;
+
+  @ConfigProperty(name = "portfolio.outbox.drain-interval", defaultValue = "5s")
+  Duration drainInterval;
+
+  @RestClient
+  TradeProxy tradeProxy;
+
+  // The file is rewritten with the pending trades only beyond this size
+  long compactionSize = COMPACTION_SIZE;
+
+  @Inject
+  BalanceLedger balanceLedger;
+
+  // Pending trades of each user in order, the map and the file are guarded by the lock
+  private final Lock lock = new ReentrantLock();
+  private final Lock drainLock = new ReentrantLock();
+  private final Map<String, ArrayDeque<Pending>> pendingByUser = new LinkedHashMap<>();
+  private int pendingCount;
+  private long nextSequence;
+  private FileChannel channel;
+  // Set when a failed write cannot be truncated, the file then refuses every record
+  private IOException failure;
+  private ScheduledExecutorService drainer;
+
+  private record Pending(long sequence, Trade trade) {
+  }
+
+  TradeOutbox() {
+  }
+
+  TradeOutbox(Path path, int maxTradesPerUser, int maxTrades, int batchSize, TradeProxy tradeProxy, BalanceLedger balanceLedger) {
+    this.path = Optional.ofNullable(path).map(Path::toString);
+    this.maxTradesPerUser = maxTradesPerUser;
+    this.maxTrades = maxTrades;
+    this.batchSize = batchSize;
+    this.tradeProxy = tradeProxy;
+    this.balanceLedger = balanceLedger;
+    open();
+  }
+
+  @PostConstruct
+  void open() {
+    if (path.isEmpty()) {
+      LOG.info("No trade outbox path configured, pending trades are kept in memory only");
+      return;
+    }
+    Path outboxPath = Path.of(path.get());
+    try {
+      if (outboxPath.getParent() != null) {
+        Files.createDirectories(outboxPath.getParent());
+      }
+      channel = FileChannel.open(outboxPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      replay();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open trade outbox " + outboxPath, e);
+    }
+    if (pendingCount > 0) {
+      LOG.info("Recovered " + pendingCount + " pending trades from the trade outbox");
+    }
+  }
+
+  void startDrainer(@Observes StartupEvent event) {
+    drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "trade-outbox-drainer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long intervalMillis = drainInterval.toMillis();
+    drainer.scheduleWithFixedDelay(this::drainQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void close() {
+    if (drainer != null) {
+      drainer.shutdownNow();
+    }
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOG.warn("Cannot close trade outbox", e);
+      }
+    }
+  }
+
+  /**
+   * Keeps the trade until it is replayed to the trades service, once it is on disk.
+   * Refuses the trade when the user, or the outbox, has too many pending trades.
+   */
+  public void enqueue(Trade trade) {
+    lock.lock();
+    try {
+      ArrayDeque<Pending> userPending = pendingByUser.get(trade.userId());
+      if ((userPending != null && userPending.size() >= maxTradesPerUser) || pendingCount >= maxTrades) {
+        throw new TradeRefusedException("Too many pending trades, trade refused: " + trade);
+      }
+      Pending pending = new Pending(nextSequence++, trade);
+      write(encodeEnqueued(pending));
+      pendingByUser.computeIfAbsent(trade.userId(), userId -> new ArrayDeque<>()).addLast(pending);
+      pendingCount++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Pending trades of the user, oldest first.
+   */
+  public List<Trade> pending(String userId) {
+    lock.lock();
+    try {
+      ArrayDeque<Pending> userPending = pendingByUser.get(userId);
+      return userPending == null ? List.of() : userPending.stream().map(Pending::trade).toList();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return pendingCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Replays the pending trades in batches of a single user, oldest first,
+   * until every trade is delivered or the trades service fails.
+   * A batch the trades service refuses for good is sent again a trade at a time, and the trades it still refuses are dropped.
+   */
+  void drain() {
+    drainLock.lock();
+    try {
+      List<Pending> batch;
+      while (!(batch = nextBatch()).isEmpty()) {
+        replay(batch);
+      }
+    } finally {
+      drainLock.unlock();
+    }
+  }
+
+  private void replay(List<Pending> batch) {
+    List<Trade> trades = batch.stream().map(Pending::trade).toList();
+    List<TradeResult> results;
+    try {
+      results = tradeProxy.executeTrades(tradeKeys(trades), trades);
+    } catch (WebApplicationException e) {
+      if (!isRefused(e)) {
+        throw e;
+      }
+      if (batch.size() > 1) {
+        // Only the trades refused on their own are dropped
+        for (Pending pending : batch) {
+          replay(List.of(pending));
+        }
+        return;
+      }
+      LOG.error("Pending trade refused by the trades service (HTTP " + e.getResponse().getStatus() + "), dropped: " + trades.getFirst());
+      delivered(batch);
+      return;
+    }
+    delivered(batch);
+    // Credited once delivered, so a batch sent again after a failure is not credited twice
+    for (TradeResult result : results) {
+      if (result.error() != null) {
+        LOG.warn("Pending trade rejected by the trades service (" + result.error() + "): " + trades.get(result.index()));
+      } else {
+        balanceLedger.credit(trades.get(result.index()));
+      }
+    }
+    LOG.info("Replayed " + batch.size() + " pending trades of " + trades.getFirst().userId());
+  }
+
+  /**
+   * Whether the trades service refuses the request itself, so sending it again cannot succeed.
+   * A timeout, a conflict with a request in progress, rate limiting and server errors are worth retrying.
+   */
+  private static boolean isRefused(WebApplicationException e) {
+    int status = e.getResponse().getStatus();
+    return status >= 400 && status < 500 && status != 408 && status != 409 && status != 429;
+  }
+
+  private void drainQuietly() {
+    try {
+      drain();
+    } catch (RuntimeException e) {
+      LOG.warn("Cannot replay pending trades yet, " + size() + " pending: " + e.getMessage());
+    }
+  }
+
+  private List<Pending> nextBatch() {
+    lock.lock();
+    try {
+      // The user with the oldest pending trade
+      ArrayDeque<Pending> oldest = null;
+      for (ArrayDeque<Pending> userPending : pendingByUser.values()) {
+        if (oldest == null || userPending.getFirst().sequence() < oldest.getFirst().sequence()) {
+          oldest = userPending;
+        }
+      }
+      if (oldest == null) {
+        return List.of();
+      }
+      List<Pending> batch = new ArrayList<>(Math.min(batchSize, oldest.size()));
+      for (Pending pending : oldest) {
+        if (batch.size() == batchSize) {
+          break;
+        }
+        batch.add(pending);
+      }
+      return batch;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void delivered(List<Pending> batch) {
+    lock.lock();
+    try {
+      write(encodeDelivered(batch));
+      String userId = batch.getFirst().trade().userId();
+      ArrayDeque<Pending> userPending = pendingByUser.get(userId);
+      // Only the drainer removes trades, always from the head
+      for (int i = 0; i < batch.size(); i++) {
+        userPending.removeFirst();
+      }
+      if (userPending.isEmpty()) {
+        pendingByUser.remove(userId);
+      }
+      pendingCount -= batch.size();
+      compact();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static String tradeKeys(List<Trade> trades) {
+    StringJoiner keys = new StringJoiner(",");
+    for (Trade trade : trades) {
+      keys.add(trade.idempotencyKey());
+    }
+    return keys.toString();
+  }
+
+  private void write(ByteBuffer record) {
+    if (channel == null) {
+      return;
+    }
+    if (failure != null) {
+      throw new UncheckedIOException("Trade outbox failed, no trade can be queued until restart", failure);
+    }
+    try {
+      long start = channel.position();
+      try {
+        while (record.hasRemaining()) {
+          channel.write(record);
+        }
+        channel.force(false);
+      } catch (IOException e) {
+        rollBack(start, e);
+        throw e;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot write to the trade outbox", e);
+    }
+  }
+
+  /**
+   * Truncates a partly written record, so the records written after it stay replayable.
+   * Called with the lock held.
+   */
+  private void rollBack(long start, IOException writeFailure) {
+    try {
+      channel.truncate(start);
+      channel.position(start);
+    } catch (IOException e) {
+      writeFailure.addSuppressed(e);
+      failure = writeFailure;
+      LOG.error("Trade outbox failed, no trade can be queued until restart", writeFailure);
+    }
+  }
+
+  private void compact() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      if (pendingCount == 0) {
+        channel.truncate(0);
+        channel.force(false);
+      } else if (channel.size() > compactionSize) {
+        rewritePending();
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot compact the trade outbox", e);
+    }
+  }
+
+  /**
+   * Rewrites the pending trades only, then replaces the file at once. The current file stays open, and in use,
+   * until the new one has replaced it, so a failed compaction leaves the outbox as it was.
+   */
+  private void rewritePending() throws IOException {
+    Path outboxPath = Path.of(path.get());
+    Path compacted = outboxPath.resolveSibling(outboxPath.getFileName() + ".compact");
+    FileChannel output = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      for (ArrayDeque<Pending> userPending : pendingByUser.values()) {
+        for (Pending pending : userPending) {
+          ByteBuffer record = encodeEnqueued(pending);
+          while (record.hasRemaining()) {
+            output.write(record);
+          }
+        }
+      }
+      output.force(false);
+      // The open channel follows the file it is moved to
+      Files.move(compacted, outboxPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      output.close();
+      Files.deleteIfExists(compacted);
+      throw e;
+    }
+    FileChannel replaced = channel;
+    channel = output;
+    replaced.close();
+  }
+
+  /**
+   * Reads back the trades enqueued and not delivered, then positions the file for appends
+   * after the last complete record.
+   */
+  private void replay() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+      // Read the whole file
+    }
+    buffer.flip();
+
+    Map<Long, Trade> pendingTrades = new LinkedHashMap<>();
+    int position = 0;
+    CRC32 crc = new CRC32();
+    while (position + Integer.BYTES <= buffer.limit()) {
+      int length = buffer.getInt(position);
+      int end = position + Integer.BYTES + length + Integer.BYTES;
+      if (length <= 0 || length > MAX_RECORD_SIZE || end > buffer.limit()) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      buffer.get(position + Integer.BYTES, payload);
+      crc.reset();
+      crc.update(payload);
+      if ((int) crc.getValue() != buffer.getInt(end - Integer.BYTES)) {
+        break;
+      }
+      try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload))) {
+        byte type = input.readByte();
+        if (type == ENQUEUED) {
+          long sequence = input.readLong();
+          pendingTrades.put(sequence, readTrade(input));
+          nextSequence = Math.max(nextSequence, sequence + 1);
+        } else if (type == DELIVERED) {
+          int count = input.readInt();
+          for (int i = 0; i < count; i++) {
+            pendingTrades.remove(input.readLong());
+          }
+        } else {
+          throw new IllegalStateException("Unsupported trade outbox record type: " + type);
+        }
+      }
+      position = end;
+    }
+
+    if (position < buffer.limit()) {
+      LOG.warn("Truncating " + (buffer.limit() - position) + " bytes of incomplete records at the end of the trade outbox");
+      channel.truncate(position);
+    }
+    channel.position(position);
+
+    pendingTrades.forEach((sequence, trade) ->
+      pendingByUser.computeIfAbsent(trade.userId(), userId -> new ArrayDeque<>()).addLast(new Pending(sequence, trade)));
+    pendingCount = pendingTrades.size();
+  }
+
+  private static ByteBuffer encodeEnqueued(Pending pending) {
+    return record(output -> {
+      output.writeByte(ENQUEUED);
+      output.writeLong(pending.sequence());
+      writeTrade(output, pending.trade());
+    });
+  }
+
+  private static ByteBuffer encodeDelivered(List<Pending> batch) {
+    return record(output -> {
+      output.writeByte(DELIVERED);
+      output.writeInt(batch.size());
+      for (Pending pending : batch) {
+        output.writeLong(pending.sequence());
+      }
+    });
+  }
+
+  private interface PayloadWriter {
+    void write(DataOutputStream output) throws IOException;
+  }
+
+  private static ByteBuffer record(PayloadWriter writer) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      writer.write(output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    byte[] payload = bytes.toByteArray();
+    if (payload.length > MAX_RECORD_SIZE) {
+      throw new IllegalArgumentException("Record too large for the trade outbox: " + payload.length + " bytes");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return ByteBuffer.allocate(Integer.BYTES + payload.length + Integer.BYTES)
+      .putInt(payload.length)
+      .put(payload)
+      .putInt((int) crc.getValue())
+      .flip();
+  }
+
+  private static void writeTrade(DataOutputStream output, Trade trade) throws IOException {
+    output.writeUTF(trade.userId());
+    writeNullable(output, trade.timestamp() == null ? null : trade.timestamp().toString());
+    writeNullable(output, trade.usdAmount() == null ? null : trade.usdAmount().toString());
+    writeNullable(output, trade.toCurrency());
+    writeNullable(output, trade.convertedAmount() == null ? null : trade.convertedAmount().toString());
+    writeNullable(output, trade.exchangeRate() == null ? null : trade.exchangeRate().toString());
+    writeNullable(output, trade.status());
+  }
+
+  private static Trade readTrade(DataInputStream input) throws IOException {
+    String userId = input.readUTF();
+    String timestamp = readNullable(input);
+    String usdAmount = readNullable(input);
+    String toCurrency = readNullable(input);
+    String convertedAmount = readNullable(input);
+    String exchangeRate = readNullable(input);
+    String status = readNullable(input);
+    return new Trade(userId,
+      timestamp == null ? null : LocalDateTime.parse(timestamp),
+      usdAmount == null ? null : new BigDecimal(usdAmount),
+      toCurrency,
+      convertedAmount == null ? null : new BigDecimal(convertedAmount),
+      exchangeRate == null ? null : new BigDecimal(exchangeRate),
+      status);
+  }
+
+  private static void writeNullable(DataOutputStream output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static String readNullable(DataInputStream input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+}
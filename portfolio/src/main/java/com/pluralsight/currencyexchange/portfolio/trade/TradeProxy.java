@@ -2,10 +2,12 @@ package com.pluralsight.currencyexchange.portfolio.trade;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
@@ -17,10 +19,24 @@ import java.util.List;
 @RegisterRestClient(configKey = "trades")
 public interface TradeProxy {
 
+  /**
+   * Executes the trade once, however many times it is retried with the same key.
+   */
   @POST
-  void executeTrade(Trade trade);
+  void executeTrade(@HeaderParam("Idempotency-Key") String idempotencyKey, Trade trade);
 
+  /**
+   * Executes the trades in one pass, with the comma-separated keys of the trades in order: each trade is executed once
+   * however many times it is sent with the same key, alone or in any batch.
+   */
+  @POST
+  @Path("/batch")
+  List<TradeResult> executeTrades(@HeaderParam("Idempotency-Keys") String tradeKeys, List<Trade> trades);
+
+  /**
+   * Most recent trades of the user, newest first.
+   */
   @GET
   @Path("/{userId}")
-  List<Trade> getAllTrades(@PathParam("userId") String userId);
+  List<Trade> getRecentTrades(@PathParam("userId") String userId, @QueryParam("limit") int limit, @QueryParam("order") String order);
 }
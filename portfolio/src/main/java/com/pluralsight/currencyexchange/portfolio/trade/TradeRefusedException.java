@@ -0,0 +1,11 @@
+package com.pluralsight.currencyexchange.portfolio.trade;
+
+/**
+ * Thrown when a trade cannot be queued for the trades service: it is not executed, the user has to submit it again.
+ */
+public class TradeRefusedException extends IllegalStateException {
+
+  public TradeRefusedException(String message) {
+    super(message);
+  }
+}
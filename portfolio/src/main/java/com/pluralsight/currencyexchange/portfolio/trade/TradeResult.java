@@ -0,0 +1,7 @@
+package com.pluralsight.currencyexchange.portfolio.trade;
+
+/**
+ * Result of a trade of a batch: the executed trade, or why it was rejected.
+ */
+public record TradeResult(int index, Trade trade, String error) {
+}
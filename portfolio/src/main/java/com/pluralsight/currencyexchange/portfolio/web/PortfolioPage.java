@@ -0,0 +1,33 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.portfolio.CachedRates;
+import com.pluralsight.currencyexchange.portfolio.Portfolio;
+import com.pluralsight.currencyexchange.portfolio.User;
+import com.pluralsight.currencyexchange.portfolio.trade.Trade;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Data of the portfolio page. The sections not loaded before the deadline are empty and listed as unavailable.
+ */
+public record PortfolioPage(List<Portfolio> portfolios, CachedRates rates, List<Trade> trades, List<String> unavailable) {
+
+  /**
+   * Weak entity tag of the page of the user, changing with the rate tick, the trades and the balances,
+   * so an unchanged page is known without rendering it. It also changes with the session and the CSRF token
+   * in the forms of the page, so a page cached by the browser never carries a token no longer valid.
+   */
+  public String etag(User user, String sessionToken, String csrfToken) {
+    long hash = user.hashCode();
+    hash = 31 * hash + Objects.hashCode(sessionToken);
+    hash = 31 * hash + Objects.hashCode(csrfToken);
+    hash = 31 * hash + rates.version();
+    hash = 31 * hash + (rates.stale() ? 1 : 0);
+    hash = 31 * hash + trades.size();
+    hash = 31 * hash + (trades.isEmpty() ? 0 : trades.getLast().hashCode());
+    hash = 31 * hash + portfolios.hashCode();
+    hash = 31 * hash + unavailable.hashCode();
+    return "W/\"" + Long.toHexString(hash) + '"';
+  }
+}
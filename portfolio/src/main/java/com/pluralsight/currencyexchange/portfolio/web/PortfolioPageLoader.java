@@ -0,0 +1,85 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.portfolio.CachedRates;
+import com.pluralsight.currencyexchange.portfolio.Portfolio;
+import com.pluralsight.currencyexchange.portfolio.PortfolioService;
+import com.pluralsight.currencyexchange.portfolio.trade.Trade;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the sections of the portfolio page concurrently, each on its own virtual thread, so the page takes as long
+ * as the slowest upstream call rather than their sum. All of them share the {@code portfolio.page.deadline}:
+ * a section not loaded by then is cancelled and rendered as unavailable, with the rest of the page.
+ */
+@ApplicationScoped
+public class PortfolioPageLoader {
+
+  private static final Logger LOG = Logger.getLogger(PortfolioPageLoader.class);
+
+  private static final CachedRates NO_RATES = new CachedRates(List.of(), null, true, 0);
+
+  @Inject
+  PortfolioService portfolioService;
+
+  @ConfigProperty(name = "portfolio.page.deadline", defaultValue = "2s")
+  Duration deadline;
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  PortfolioPageLoader() {
+  }
+
+  PortfolioPageLoader(PortfolioService portfolioService, Duration deadline) {
+    this.portfolioService = portfolioService;
+    this.deadline = deadline;
+  }
+
+  public PortfolioPage load(String userId) {
+    long deadlineNanos = System.nanoTime() + deadline.toNanos();
+    Future<List<Portfolio>> portfolios = executor.submit(() -> portfolioService.getUserPortfolio(userId));
+    Future<CachedRates> rates = executor.submit(() -> portfolioService.getCachedRates());
+    Future<List<Trade>> trades = executor.submit(() -> portfolioService.getAllTrades(userId));
+
+    List<String> unavailable = new ArrayList<>();
+    return new PortfolioPage(
+      await(portfolios, deadlineNanos, List.of(), "balances", unavailable),
+      await(rates, deadlineNanos, NO_RATES, "rates", unavailable),
+      await(trades, deadlineNanos, List.of(), "trades", unavailable),
+      unavailable);
+  }
+
+  private static <T> T await(Future<T> section, long deadlineNanos, T empty, String name, List<String> unavailable) {
+    try {
+      return section.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      LOG.warn("Portfolio " + name + " not loaded before the deadline, rendering the page without them");
+      section.cancel(true);
+    } catch (ExecutionException e) {
+      LOG.warn("Portfolio " + name + " not loaded, rendering the page without them", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      section.cancel(true);
+    }
+    unavailable.add(name);
+    return empty;
+  }
+
+  @PreDestroy
+  void close() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,41 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.currency.CurrencyRate;
+import com.pluralsight.currencyexchange.portfolio.CachedRates;
+import io.quarkus.qute.RawString;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Rates section of the portfolio page, the same for every user: rendered once per version of the rates,
+ * then inserted as is in every page until the next tick.
+ */
+@ApplicationScoped
+public class RatesFragmentCache {
+
+  private final Function<List<CurrencyRate>, String> renderer;
+  private volatile Fragment fragment;
+
+  private record Fragment(long version, RawString html) {
+  }
+
+  RatesFragmentCache() {
+    this(rates -> WebApplication.Templates.rates(rates).render());
+  }
+
+  RatesFragmentCache(Function<List<CurrencyRate>, String> renderer) {
+    this.renderer = renderer;
+  }
+
+  public RawString render(CachedRates rates) {
+    Fragment current = fragment;
+    if (current == null || current.version() != rates.version()) {
+      // Concurrent pages of a new tick may render it more than once, all alike
+      current = new Fragment(rates.version(), new RawString(renderer.apply(rates.rates())));
+      fragment = current;
+    }
+    return current.html();
+  }
+}
@@ -0,0 +1,248 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.portfolio.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signed-in users by session token, found in O(1). By default, tokens are random and sessions are kept in memory,
+ * evicted once idle for {@code portfolio.session.idle-timeout}, and bounded to {@code portfolio.session.max-sessions}
+ * by evicting the least recently used ones.
+ * With {@code portfolio.session.signed-cookies}, nothing is kept: the token carries the user and the time it was
+ * issued, signed with HMAC-SHA256 and {@code portfolio.session.secret}, so any instance sharing the secret serves
+ * the session, without sticky sessions. Such a token is reissued as it is used, so it expires once idle as well.
+ * Signing out revokes every token of the user issued until then, on this instance: only the time of the last
+ * sign-out of each user is kept, and only while tokens issued before it could still be in use.
+ */
+@ApplicationScoped
+public class SessionStore {
+
+  private static final Logger LOG = Logger.getLogger(SessionStore.class);
+
+  private static final String HMAC = "HmacSHA256";
+  private static final long SWEEP_INTERVAL_MILLIS = Duration.ofMinutes(1).toMillis();
+  private static final long REISSUE_AFTER_MILLIS = Duration.ofMinutes(1).toMillis();
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  @ConfigProperty(name = "portfolio.session.idle-timeout", defaultValue = "30m")
+  Duration idleTimeout;
+
+  @ConfigProperty(name = "portfolio.session.max-sessions", defaultValue = "200000")
+  int maxSessions;
+
+  @ConfigProperty(name = "portfolio.session.signed-cookies", defaultValue = "false")
+  boolean signedCookies;
+
+  @ConfigProperty(name = "portfolio.session.secret")
+  Optional<String> secret;
+
+  private final Clock clock;
+  private final SecureRandom random = new SecureRandom();
+  private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+  private final AtomicLong lastSweepMillis = new AtomicLong();
+  // Time of the last sign-out by email, with signed cookies: the tokens issued until then are revoked
+  private final ConcurrentHashMap<String, Long> signedOutMillis = new ConcurrentHashMap<>();
+  private Mac mac;   // Initialized once, cloned for each signature
+
+  /**
+   * Session of a user. Its token replaces the one it was found with when they differ.
+   */
+  public record Session(String token, User user) {
+  }
+
+  private static final class Entry {
+
+    final User user;
+    volatile long lastAccessMillis;
+
+    Entry(User user, long lastAccessMillis) {
+      this.user = user;
+      this.lastAccessMillis = lastAccessMillis;
+    }
+  }
+
+  SessionStore() {
+    this(Clock.systemUTC());
+  }
+
+  SessionStore(Duration idleTimeout, int maxSessions, String secret, Clock clock) {
+    this(clock);
+    this.idleTimeout = idleTimeout;
+    this.maxSessions = maxSessions;
+    this.signedCookies = secret != null;
+    this.secret = Optional.ofNullable(secret);
+    init();
+  }
+
+  private SessionStore(Clock clock) {
+    this.clock = clock;
+  }
+
+  @PostConstruct
+  void init() {
+    if (!signedCookies) {
+      return;
+    }
+    String key = secret.filter(value -> !value.isBlank())
+      .orElseThrow(() -> new IllegalStateException("portfolio.session.secret is required with signed session cookies"));
+    try {
+      mac = Mac.getInstance(HMAC);
+      mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot sign session cookies", e);
+    }
+  }
+
+  /**
+   * Starts a session for the user, returning its token.
+   */
+  public String create(User user) {
+    long now = clock.millis();
+    if (signedCookies) {
+      // Issued after the last sign-out, even within the same millisecond
+      return sign(user.email(), Math.max(now, signedOutMillis.getOrDefault(user.email(), Long.MIN_VALUE) + 1));
+    }
+    sweep(now);
+    byte[] bytes = new byte[32];
+    random.nextBytes(bytes);
+    String token = ENCODER.encodeToString(bytes);
+    sessions.put(token, new Entry(user, now));
+    return token;
+  }
+
+  /**
+   * Session of the token, null when the token is unknown, tampered with, or idle for too long.
+   */
+  public Session find(String token) {
+    if (token == null || token.isEmpty()) {
+      return null;
+    }
+    long now = clock.millis();
+    return signedCookies ? verify(token, now) : lookup(token, now);
+  }
+
+  /**
+   * Ends the session of the token. With signed cookies, every session of the user ends.
+   */
+  public void remove(String token) {
+    if (token == null) {
+      return;
+    }
+    if (!signedCookies) {
+      sessions.remove(token);
+      return;
+    }
+    long now = clock.millis();
+    signedOutMillis.values().removeIf(signedOut -> isIdle(signedOut, now));
+    Session session = verify(token, now);
+    if (session != null) {
+      signedOutMillis.merge(session.user().email(), now, Math::max);
+    }
+  }
+
+  /**
+   * Sessions kept in memory, none with signed cookies.
+   */
+  public int size() {
+    return sessions.size();
+  }
+
+  private Session lookup(String token, long now) {
+    Entry entry = sessions.get(token);
+    if (entry == null) {
+      return null;
+    }
+    if (isIdle(entry.lastAccessMillis, now)) {
+      sessions.remove(token, entry);
+      return null;
+    }
+    entry.lastAccessMillis = now;
+    return new Session(token, entry.user);
+  }
+
+  /**
+   * Drops the idle sessions once a minute, or as soon as the store is full.
+   * When still full, evicts the least recently used 1% at once, so a full store is not scanned on every sign-in.
+   */
+  private void sweep(long now) {
+    long lastSweep = lastSweepMillis.get();
+    boolean full = sessions.size() >= maxSessions;
+    if (full || (now - lastSweep >= SWEEP_INTERVAL_MILLIS && lastSweepMillis.compareAndSet(lastSweep, now))) {
+      sessions.values().removeIf(entry -> isIdle(entry.lastAccessMillis, now));
+    }
+    if (sessions.size() >= maxSessions) {
+      long[] accesses = sessions.values().stream().mapToLong(entry -> entry.lastAccessMillis).sorted().toArray();
+      if (accesses.length > 0) {
+        long cutoff = accesses[Math.min(Math.max(maxSessions / 100, 1), accesses.length) - 1];
+        sessions.values().removeIf(entry -> entry.lastAccessMillis <= cutoff);
+        LOG.warn("Session store full with " + accesses.length + " sessions, evicted the least recently used ones");
+      }
+    }
+  }
+
+  private boolean isIdle(long lastAccessMillis, long now) {
+    return now - lastAccessMillis > idleTimeout.toMillis();
+  }
+
+  private String sign(String email, long issuedMillis) {
+    String payload = ENCODER.encodeToString(email.getBytes(StandardCharsets.UTF_8)) + '.' + issuedMillis;
+    return payload + '.' + ENCODER.encodeToString(signature(payload));
+  }
+
+  private Session verify(String token, long now) {
+    int signatureStart = token.lastIndexOf('.');
+    int issuedStart = token.lastIndexOf('.', signatureStart - 1);
+    if (issuedStart <= 0) {
+      return null;
+    }
+    try {
+      String payload = token.substring(0, signatureStart);
+      if (!MessageDigest.isEqual(signature(payload), DECODER.decode(token.substring(signatureStart + 1)))) {
+        LOG.warn("Rejecting a session cookie with an invalid signature");
+        return null;
+      }
+      long issuedMillis = Long.parseLong(token, issuedStart + 1, signatureStart, 10);
+      if (isIdle(issuedMillis, now)) {
+        return null;
+      }
+      String email = new String(DECODER.decode(token.substring(0, issuedStart)), StandardCharsets.UTF_8);
+      Long signedOut = signedOutMillis.get(email);
+      if (signedOut != null && issuedMillis <= signedOut) {
+        return null;
+      }
+      User user = User.byEmail(email);
+      if (user == null) {
+        return null;
+      }
+      return new Session(now - issuedMillis >= REISSUE_AFTER_MILLIS ? sign(email, now) : token, user);
+    } catch (IllegalArgumentException e) {
+      // Not Base64 or not a number: not a token of ours
+      return null;
+    }
+  }
+
+  private byte[] signature(String payload) {
+    try {
+      Mac signer = (Mac) mac.clone();
+      return signer.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("Cannot sign session cookies", e);
+    }
+  }
+}
@@ -4,6 +4,9 @@ import com.pluralsight.currencyexchange.portfolio.User;
 import io.quarkus.arc.Arc;
 import io.quarkus.qute.TemplateGlobal;
 
+/**
+ * User of the current request, for every template. The session is found once per request, see {@link UserSession}.
+ */
 public class TemplateGlobals {
 
   @TemplateGlobal
@@ -1,26 +1,87 @@
 package com.pluralsight.currencyexchange.portfolio.web;
 
 import com.pluralsight.currencyexchange.portfolio.User;
-import jakarta.enterprise.context.ApplicationScoped;
+import io.vertx.core.http.Cookie;
+import io.vertx.core.http.CookieSameSite;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-@ApplicationScoped
+/**
+ * Session of the current request, found once from the session cookie in the {@link SessionStore}.
+ */
+@RequestScoped
 public class UserSession {
 
-  private User currentUser;
+  static final String COOKIE = "portfolio-session";
+
+  @Inject
+  SessionStore sessionStore;
+
+  @Inject
+  RoutingContext routingContext;
+
+  // Only sent over HTTPS, disabled in dev mode and tests served over plain HTTP
+  @ConfigProperty(name = "portfolio.session.secure-cookie", defaultValue = "true")
+  boolean secureCookie;
+
+  private SessionStore.Session session;
+  private boolean resolved;
 
   public User getCurrentUser() {
-    return currentUser;
+    SessionStore.Session current = session();
+    return current == null ? null : current.user();
   }
 
   public void setCurrentUser(User user) {
-    this.currentUser = user;
+    String token = sessionStore.create(user);
+    session = new SessionStore.Session(token, user);
+    resolved = true;
+    setCookie(token);
+  }
+
+  /**
+   * Token of the session, null when not logged in.
+   */
+  public String token() {
+    SessionStore.Session current = session();
+    return current == null ? null : current.token();
   }
 
   public boolean isLoggedIn() {
-    return currentUser != null;
+    return getCurrentUser() != null;
   }
 
   public void logout() {
-    this.currentUser = null;
+    SessionStore.Session current = session();
+    if (current != null) {
+      sessionStore.remove(current.token());
+    }
+    session = null;
+    resolved = true;
+    routingContext.response().addCookie(Cookie.cookie(COOKIE, "").setPath("/").setSecure(secureCookie).setMaxAge(0));
+  }
+
+  private SessionStore.Session session() {
+    if (!resolved) {
+      resolved = true;
+      Cookie cookie = routingContext.request().getCookie(COOKIE);
+      String token = cookie == null ? null : cookie.getValue();
+      session = sessionStore.find(token);
+      if (session != null && !session.token().equals(token)) {
+        // A signed cookie reissued to extend the session
+        setCookie(session.token());
+      }
+    }
+    return session;
+  }
+
+  private void setCookie(String token) {
+    routingContext.response().addCookie(Cookie.cookie(COOKIE, token)
+      .setPath("/")
+      .setHttpOnly(true)
+      .setSecure(secureCookie)
+      .setSameSite(CookieSameSite.LAX));
   }
-}
\ No newline at end of file
+}
@@ -5,13 +5,23 @@ import com.pluralsight.currencyexchange.portfolio.Portfolio;
 import com.pluralsight.currencyexchange.portfolio.PortfolioService;
 import com.pluralsight.currencyexchange.portfolio.User;
 import com.pluralsight.currencyexchange.portfolio.trade.Trade;
+import com.pluralsight.currencyexchange.portfolio.trade.TradeRefusedException;
 import io.quarkiverse.renarde.Controller;
+import io.quarkus.csrf.reactive.runtime.CsrfTokenParameterProvider;
 import io.quarkus.qute.CheckedTemplate;
+import io.quarkus.qute.RawString;
 import io.quarkus.qute.TemplateInstance;
+import io.vertx.core.http.Cookie;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestForm;
 
@@ -28,13 +38,27 @@ public class WebApplication extends Controller {
   @Inject
   PortfolioService portfolioService;
 
+  @Inject
+  PortfolioPageLoader portfolioPageLoader;
+
+  @Inject
+  RatesFragmentCache ratesFragmentCache;
+
+  @Inject
+  RoutingContext routingContext;
+
+  @Inject
+  CsrfTokenParameterProvider csrf;
+
   @CheckedTemplate
   static class Templates {
     public static native TemplateInstance index();
 
     public static native TemplateInstance signin(String loginError, String passwordError, String email);
 
-    public static native TemplateInstance portfolio(User user, List<Portfolio> portfolios, List<CurrencyRate> exchangeRates, List<Trade> trades);
+    public static native TemplateInstance portfolio(User user, List<Portfolio> portfolios, RawString ratesFragment, boolean ratesStale, List<Trade> trades, List<String> unavailable, String tradeError);
+
+    public static native TemplateInstance rates(List<CurrencyRate> exchangeRates);
 
     public static native TemplateInstance profile(User user);
   }
@@ -72,7 +96,7 @@ public class WebApplication extends Controller {
       return Templates.signin(loginError, passwordError, email);
     }
 
-    User user = findUserByEmail(email.trim());
+    User user = User.byEmail(email.trim());
     if (user == null) {
       loginError = "User not found";
       LOG.warn("Signin failed: User not found - " + email.trim());
@@ -109,32 +133,72 @@ public class WebApplication extends Controller {
       LOG.info("Portfolio access attempt without authentication - redirecting to signin");
       return signinPage();
     }
+    return showPortfolio(null);
+  }
 
+  private TemplateInstance showPortfolio(String tradeError) {
     User currentUser = userSession.getCurrentUser();
-    List<Portfolio> portfolios = portfolioService.getUserPortfolio(currentUser.email());
-    List<CurrencyRate> exchangeRates = portfolioService.getAllCurrencyRates();
-    List<Trade> trades = portfolioService.getAllTrades(currentUser.email());
-    LOG.info("Viewing portfolio for user: " + currentUser.email() + " with " + portfolios.size() + " entries and " + trades.size() + " trades");
+    PortfolioPage page = portfolioPageLoader.load(currentUser.email());
+    LOG.info("Viewing portfolio for user: " + currentUser.email() + " with " + page.portfolios().size() + " entries and " + page.trades().size() + " trades");
 
-    return Templates.portfolio(currentUser, portfolios, exchangeRates, trades);
+    return render(currentUser, page, tradeError);
   }
 
   @POST
   @Path("/refresh")
-  public TemplateInstance refreshExchangeRates() {
+  public void refreshExchangeRates() {
     LOG.info("Entering refreshExchangeRates()");
-    if (!userSession.isLoggedIn()) {
-      LOG.info("Portfolio refresh attempt without authentication - redirecting to signin");
-      return signinPage();
+
+    // Back to the portfolio page with a GET, so an unchanged page is answered with 304 Not Modified
+    redirect(WebApplication.class).portfolio();
+  }
+
+  /**
+   * Renders the page, unless the browser already has this version of it: then answers 304 Not Modified.
+   * A page showing a trade error is never cached, the error is only shown once.
+   */
+  private TemplateInstance render(User user, PortfolioPage page, String tradeError) {
+    if (tradeError != null) {
+      routingContext.response().putHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+      return Templates.portfolio(user, page.portfolios(), ratesFragmentCache.render(page.rates()), page.rates().stale(), page.trades(), page.unavailable(), tradeError);
+    }
+    String etag = page.etag(user, userSession.token(), csrfToken());
+    HttpServerRequest request = routingContext.request();
+    boolean conditional = request.method() == HttpMethod.GET || request.method() == HttpMethod.HEAD;
+    if (conditional && matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+      throw new WebApplicationException(Response.notModified()
+        .header(HttpHeaders.ETAG, etag)
+        .header(HttpHeaders.CACHE_CONTROL, "private, no-cache")
+        .build());
     }
+    routingContext.response()
+      .putHeader(HttpHeaders.ETAG, etag)
+      .putHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
 
-    User currentUser = userSession.getCurrentUser();
-    List<Portfolio> portfolios = portfolioService.getUserPortfolio(currentUser.email());
-    List<CurrencyRate> exchangeRates = portfolioService.getAllCurrencyRates();
-    List<Trade> trades = portfolioService.getAllTrades(currentUser.email());
-    LOG.info("Refreshing portfolio for user: " + currentUser.email() + " with updated exchange rates");
+    return Templates.portfolio(user, page.portfolios(), ratesFragmentCache.render(page.rates()), page.rates().stale(), page.trades(), page.unavailable(), null);
+  }
+
+  /**
+   * The CSRF token in the forms of the page, from its cookie: the page is rendered again when a new one is issued.
+   */
+  private String csrfToken() {
+    Cookie cookie = routingContext.request().getCookie(csrf.getCookieName());
+    return cookie == null ? null : cookie.getValue();
+  }
 
-    return Templates.portfolio(currentUser, portfolios, exchangeRates, trades);
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    // Weak comparison: W/"x" matches "x"
+    String opaqueTag = etag.substring(2);
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaqueTag)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Path("/profile")
@@ -160,6 +224,7 @@ public class WebApplication extends Controller {
     }
 
     User currentUser = userSession.getCurrentUser();
+    String tradeError = null;
 
     try {
       // Get current exchange rate for the target currency
@@ -172,23 +237,15 @@ public class WebApplication extends Controller {
       LOG.info("Trade executed successfully for user: " + currentUser.email() +
         ", amount: " + usdAmount + ", currency: " + toCurrency);
 
+    } catch (TradeRefusedException e) {
+      LOG.warn("Trade refused for user: " + currentUser.email() + ", " + e.getMessage());
+      tradeError = "Too many trades are waiting for the trades service, your trade was not executed. Please try again later.";
     } catch (Exception e) {
       LOG.error("Trade execution failed for user: " + currentUser.email(), e);
+      tradeError = "Your trade could not be executed, please try again.";
     }
 
-    // Redirect back to portfolio page to show updated data
-    return portfolio();
-  }
-
-  private User findUserByEmail(String email) {
-    return switch (email) {
-      case "john.doe@example.com" -> new User(1L, "John", "Doe", "john.doe@example.com",
-        "4532123456781234", java.time.YearMonth.of(2026, 12), "VISA");
-      case "jane.smith@example.com" -> new User(2L, "Jane", "Smith", "jane.smith@example.com",
-        "5555123456789876", java.time.YearMonth.of(2025, 8), "MASTERCARD");
-      case "bob.johnson@example.com" -> new User(3L, "Bob", "Johnson", "bob.johnson@example.com",
-        "378282246310005", java.time.YearMonth.of(2027, 3), "AMEX");
-      default -> null;
-    };
+    // Back to the portfolio page to show updated data
+    return showPortfolio(tradeError);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package com.pluralsight.currencyexchange.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class BalanceLedgerTest {
+
+  private static final User USER = new User(1L, "John", "Doe", "user1", "4532123456781234", YearMonth.of(2026, 12), "VISA");
+
+  private final BalanceLedger ledger = new BalanceLedger(Map.of("user1", List.of(
+    new Portfolio(2L, USER, "GBP", BigDecimal.valueOf(50.0), LocalDateTime.now()),
+    new Portfolio(3L, USER, "EUR", BigDecimal.valueOf(85.0), LocalDateTime.now())
+  )));
+
+  @Test
+  void shouldCreditHeldCurrenciesOnly() {
+    assertTrue(ledger.credit("user1", "EUR", new BigDecimal("92.04")));
+    assertFalse(ledger.credit("user1", "JPY", BigDecimal.TEN));
+    assertFalse(ledger.credit("user2", "EUR", BigDecimal.TEN));
+
+    List<Portfolio> portfolios = ledger.portfolios("user1");
+    assertEquals(List.of("EUR", "GBP"), portfolios.stream().map(Portfolio::currency).toList());
+    assertEquals(new BigDecimal("177.0"), portfolios.get(0).balance());
+    assertEquals(2L, portfolios.get(1).id());
+    assertEquals(List.of(), ledger.portfolios("user2"));
+  }
+
+  @Test
+  void shouldNotLoseConcurrentCredits() throws Exception {
+    int threads = 16;
+    int creditsPerThread = 100_000;
+    AtomicBoolean crediting = new AtomicBoolean(true);
+    CountDownLatch start = new CountDownLatch(1);
+
+    try (ExecutorService executor = Executors.newFixedThreadPool(threads + 1)) {
+      // Reads see every balance only grow, while all threads credit the same slots
+      Future<?> reader = executor.submit(() -> {
+        BigDecimal lastEur = BigDecimal.ZERO;
+        while (crediting.get()) {
+          BigDecimal eur = ledger.portfolios("user1").get(0).balance();
+          assertTrue(eur.compareTo(lastEur) >= 0, eur + " after " + lastEur);
+          lastEur = eur;
+        }
+      });
+
+      List<Future<?>> writers = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        writers.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < creditsPerThread; j++) {
+            ledger.credit("user1", "EUR", new BigDecimal("0.1"));
+            ledger.credit("user1", "GBP", BigDecimal.ONE);
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> writer : writers) {
+        writer.get();
+      }
+      crediting.set(false);
+      reader.get();
+    }
+
+    List<Portfolio> portfolios = ledger.portfolios("user1");
+    assertEquals(new BigDecimal("85.0").add(new BigDecimal("0.1").multiply(BigDecimal.valueOf((long) threads * creditsPerThread))), portfolios.get(0).balance());
+    assertEquals(new BigDecimal("50.0").add(BigDecimal.valueOf((long) threads * creditsPerThread)), portfolios.get(1).balance());
+  }
+}
@@ -0,0 +1,114 @@
+package com.pluralsight.currencyexchange.portfolio;
+
+import com.google.protobuf.Empty;
+import com.pluralsight.currencyexchange.currency.CurrencyRate;
+import com.pluralsight.currencyexchange.currency.CurrencyRateListResponse;
+import com.pluralsight.currencyexchange.currency.CurrencyRateService;
+import io.grpc.Status;
+import io.smallrye.mutiny.Uni;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+
+class CurrencyRateCacheTest {
+
+  private final MutableClock clock = new MutableClock();
+  private final CurrencyRateCache rateCache = new CurrencyRateCache(Duration.ofSeconds(3), clock);
+
+  @Test
+  void shouldServeLastRatesReceivedAsStaleWhenTooOld() {
+    rateCache.update(rates(0.92, 0.79));
+    assertFalse(rateCache.rates().stale());
+    assertEquals(0.92, rateCache.rate("EUR").getRate());
+
+    // The stream stopped: the same rates are still served, flagged as stale, but not traded at
+    clock.advance(Duration.ofSeconds(5));
+    CachedRates rates = rateCache.rates();
+    assertTrue(rates.stale());
+    assertEquals(2, rates.rates().size());
+    assertThrows(IllegalStateException.class, () -> rateCache.rate("EUR"));
+
+    long version = rates.version();
+    rateCache.update(rates(0.93, 0.80));
+    assertFalse(rateCache.rates().stale());
+    assertEquals(0.93, rateCache.rate("EUR").getRate());
+    assertNotEquals(version, rateCache.rates().version());
+  }
+
+  @Test
+  void shouldRequestRatesFromServiceBeforeFirstUpdate() {
+    rateCache.currencyService = Mockito.mock(CurrencyRateService.class);
+    Mockito.when(rateCache.currencyService.getAllCurrentRates(Empty.getDefaultInstance())).thenReturn(Uni.createFrom().item(rates(0.92, 0.79)));
+
+    assertEquals(0.79, rateCache.rate("GBP").getRate());
+    assertEquals(2, rateCache.rates().rates().size());
+    Mockito.verify(rateCache.currencyService, Mockito.times(1)).getAllCurrentRates(Empty.getDefaultInstance());
+  }
+
+  @Test
+  void shouldNotReplaceStreamedRatesWithRequestedOnes() {
+    CompletableFuture<CurrencyRateListResponse> requested = new CompletableFuture<>();
+    rateCache.currencyService = Mockito.mock(CurrencyRateService.class);
+    Mockito.when(rateCache.currencyService.getAllCurrentRates(Empty.getDefaultInstance())).thenReturn(Uni.createFrom().completionStage(requested));
+    assertThrows(IllegalStateException.class, () -> rateCache.rate("EUR"));
+
+    // The stream delivers newer rates before the response to the request
+    rateCache.update(rates(0.93, 0.80));
+    requested.complete(rates(0.92, 0.79));
+
+    assertEquals(0.93, rateCache.rate("EUR").getRate());
+  }
+
+  @Test
+  void shouldFailRatherThanServeZeroRates() {
+    rateCache.currencyService = Mockito.mock(CurrencyRateService.class);
+    Mockito.when(rateCache.currencyService.getAllCurrentRates(Empty.getDefaultInstance())).thenReturn(Uni.createFrom().failure(Status.UNAVAILABLE.asRuntimeException()));
+
+    assertThrows(IllegalStateException.class, () -> rateCache.rate("EUR"));
+
+    rateCache.update(rates(0.92, 0.79));
+    assertThrows(IllegalArgumentException.class, () -> rateCache.rate("XYZ"));
+  }
+
+  private static CurrencyRateListResponse rates(double eur, double gbp) {
+    return CurrencyRateListResponse.newBuilder()
+      .addCurrencyRates(CurrencyRate.newBuilder().setCurrencyCode("EUR").setRate(eur).build())
+      .addCurrencyRates(CurrencyRate.newBuilder().setCurrencyCode("GBP").setRate(gbp).build())
+      .build();
+  }
+
+  private static class MutableClock extends Clock {
+
+    private Instant instant = Instant.parse("2025-01-31T12:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.pluralsight.currencyexchange.portfolio;
+
+import com.google.protobuf.Empty;
+import com.pluralsight.currencyexchange.currency.CurrencyRateListResponse;
+import com.pluralsight.currencyexchange.currency.CurrencyRateService;
+import com.pluralsight.currencyexchange.portfolio.DependencyHealth.Dependency;
+import com.pluralsight.currencyexchange.portfolio.trade.TradeProxy;
+import io.grpc.Status;
+import io.smallrye.mutiny.Uni;
+import jakarta.ws.rs.ProcessingException;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+class DependencyHealthTest {
+
+  private final MutableClock clock = new MutableClock();
+  private final DependencyHealth dependencyHealth = new DependencyHealth(Duration.ofSeconds(30), clock);
+
+  @Test
+  void shouldNotTrustStatusOlderThanMaxAge() {
+    assertFalse(dependencyHealth.isReady(Dependency.CURRENCY));
+
+    dependencyHealth.up(Dependency.CURRENCY);
+    assertTrue(dependencyHealth.isReady(Dependency.CURRENCY));
+    assertFalse(dependencyHealth.isReady(Dependency.TRADES));
+
+    clock.advance(Duration.ofSeconds(31));
+    assertFalse(dependencyHealth.isReady(Dependency.CURRENCY));
+  }
+
+  @Test
+  void shouldReportLatestObservedOutcome() {
+    dependencyHealth.up(Dependency.TRADES);
+    dependencyHealth.down(Dependency.TRADES, "Connection refused");
+    assertFalse(dependencyHealth.isReady(Dependency.TRADES));
+    assertEquals("Connection refused", dependencyHealth.status(Dependency.TRADES).error());
+
+    dependencyHealth.up(Dependency.TRADES);
+    assertTrue(dependencyHealth.isReady(Dependency.TRADES));
+  }
+
+  @Test
+  void shouldCheckBothServicesInBackground() {
+    dependencyHealth.checkInterval = Duration.ofSeconds(5);
+    dependencyHealth.currencyService = Mockito.mock(CurrencyRateService.class);
+    dependencyHealth.tradeProxy = Mockito.mock(TradeProxy.class);
+    Mockito.when(dependencyHealth.currencyService.getAllCurrentRates(Empty.getDefaultInstance()))
+      .thenReturn(Uni.createFrom().item(CurrencyRateListResponse.getDefaultInstance()))
+      .thenReturn(Uni.createFrom().failure(Status.UNAVAILABLE.asRuntimeException()));
+    Mockito.when(dependencyHealth.tradeProxy.getRecentTrades("readiness-check", 1, "desc"))
+      .thenReturn(List.of())
+      .thenThrow(new ProcessingException("Connection refused"));
+
+    dependencyHealth.check();
+    assertTrue(dependencyHealth.isReady(Dependency.CURRENCY));
+    assertTrue(dependencyHealth.isReady(Dependency.TRADES));
+
+    dependencyHealth.check();
+    assertFalse(dependencyHealth.isReady(Dependency.CURRENCY));
+    assertFalse(dependencyHealth.isReady(Dependency.TRADES));
+  }
+
+  @Test
+  void shouldAnswerReadinessFromCachedStatus() {
+    PortfolioReadinessCheck readinessCheck = new PortfolioReadinessCheck();
+    readinessCheck.dependencyHealth = dependencyHealth;
+    dependencyHealth.up(Dependency.CURRENCY);
+    dependencyHealth.down(Dependency.TRADES, "Connection refused");
+
+    HealthCheckResponse response = readinessCheck.response();
+    assertEquals(HealthCheckResponse.Status.DOWN, response.getStatus());
+    assertEquals(true, response.getData().orElseThrow().get("currencyServiceReady"));
+    assertEquals(false, response.getData().orElseThrow().get("tradesServiceReady"));
+    assertEquals("Connection refused", response.getData().orElseThrow().get("tradesServiceError"));
+
+    dependencyHealth.up(Dependency.TRADES);
+    assertEquals(HealthCheckResponse.Status.UP, readinessCheck.response().getStatus());
+  }
+
+  private static class MutableClock extends Clock {
+
+    private Instant instant = Instant.parse("2025-01-31T12:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
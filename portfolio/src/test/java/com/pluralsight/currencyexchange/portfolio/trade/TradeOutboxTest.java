@@ -0,0 +1,216 @@
+package com.pluralsight.currencyexchange.portfolio.trade;
+
+import com.pluralsight.currencyexchange.portfolio.BalanceLedger;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.WebApplicationException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+class TradeOutboxTest {
+
+  @TempDir
+  Path directory;
+
+  private final TradeProxy tradeProxy = Mockito.mock(TradeProxy.class);
+  private final BalanceLedger balanceLedger = Mockito.mock(BalanceLedger.class);
+  private TradeOutbox outbox;
+
+  @AfterEach
+  void close() {
+    if (outbox != null) {
+      outbox.close();
+    }
+  }
+
+  @Test
+  void shouldRefuseTradesBeyondBounds() {
+    outbox = new TradeOutbox(null, 2, 3, 10, tradeProxy, balanceLedger);
+    outbox.enqueue(trade("user1", 1));
+    outbox.enqueue(trade("user1", 2));
+    assertThrows(TradeRefusedException.class, () -> outbox.enqueue(trade("user1", 3)));
+
+    outbox.enqueue(trade("user2", 1));
+    assertThrows(TradeRefusedException.class, () -> outbox.enqueue(trade("user3", 1)));
+    assertEquals(3, outbox.size());
+    assertEquals(List.of(), outbox.pending("user3"));
+  }
+
+  @Test
+  void shouldKeepPendingTradesAcrossRestarts() throws IOException {
+    Path path = directory.resolve("outbox.log");
+    outbox = new TradeOutbox(path, 100, 100, 10, tradeProxy, balanceLedger);
+    Trade first = trade("user1", 1);
+    Trade second = trade("user1", 2);
+    outbox.enqueue(first);
+    outbox.enqueue(second);
+    outbox.close();
+
+    // A record torn by a crash is dropped, the complete ones are kept
+    Files.write(path, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+    outbox = new TradeOutbox(path, 100, 100, 10, tradeProxy, balanceLedger);
+    assertEquals(List.of(first, second), outbox.pending("user1"));
+
+    Trade third = trade("user1", 3);
+    outbox.enqueue(third);
+    outbox.close();
+    outbox = new TradeOutbox(path, 100, 100, 10, tradeProxy, balanceLedger);
+    assertEquals(List.of(first, second, third), outbox.pending("user1"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldReplayInBatchesOfOneUser() throws IOException {
+    Path path = directory.resolve("outbox.log");
+    outbox = new TradeOutbox(path, 100, 100, 2, tradeProxy, balanceLedger);
+    for (int i = 1; i <= 3; i++) {
+      outbox.enqueue(trade("user1", i));
+    }
+    outbox.enqueue(trade("user2", 1));
+    Mockito.when(tradeProxy.executeTrades(anyString(), anyList())).thenReturn(List.of());
+
+    outbox.drain();
+
+    ArgumentCaptor<List<Trade>> batches = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(tradeProxy, Mockito.times(3)).executeTrades(anyString(), batches.capture());
+    assertEquals(List.of(List.of(trade("user1", 1), trade("user1", 2)), List.of(trade("user1", 3)), List.of(trade("user2", 1))),
+      batches.getAllValues());
+    assertEquals(0, outbox.size());
+    assertEquals(0, Files.size(path));
+  }
+
+  @Test
+  void shouldKeepAppendingAfterCompaction() throws IOException {
+    Path path = directory.resolve("outbox.log");
+    outbox = new TradeOutbox(path, 100, 100, 1, tradeProxy, balanceLedger);
+    outbox.compactionSize = 1;
+    for (int i = 1; i <= 3; i++) {
+      outbox.enqueue(trade("user1", i));
+    }
+    Mockito.when(tradeProxy.executeTrades(anyString(), anyList()))
+      .thenReturn(List.of())
+      .thenThrow(new ProcessingException("Connection refused"));
+
+    // The first trade is delivered, the file is rewritten with the two others
+    assertThrows(ProcessingException.class, () -> outbox.drain());
+    assertFalse(Files.exists(directory.resolve("outbox.log.compact")));
+    outbox.enqueue(trade("user1", 4));
+    outbox.close();
+
+    outbox = new TradeOutbox(path, 100, 100, 1, tradeProxy, balanceLedger);
+    assertEquals(List.of(trade("user1", 2), trade("user1", 3), trade("user1", 4)), outbox.pending("user1"));
+  }
+
+  @Test
+  void shouldKeepTradesWhileTradesServiceIsDown() {
+    Path path = directory.resolve("outbox.log");
+    outbox = new TradeOutbox(path, 100, 100, 2, tradeProxy, balanceLedger);
+    for (int i = 1; i <= 3; i++) {
+      outbox.enqueue(trade("user1", i));
+    }
+    Mockito.when(tradeProxy.executeTrades(anyString(), anyList()))
+      .thenReturn(List.of(new TradeResult(1, trade("user1", 2), "Invalid exchange rate")))
+      .thenThrow(new ProcessingException("Connection refused"));
+
+    assertThrows(ProcessingException.class, () -> outbox.drain());
+    assertEquals(List.of(trade("user1", 3)), outbox.pending("user1"));
+
+    // Delivered batches are not replayed after a restart
+    outbox.close();
+    outbox = new TradeOutbox(path, 100, 100, 2, tradeProxy, balanceLedger);
+    assertEquals(List.of(trade("user1", 3)), outbox.pending("user1"));
+  }
+
+  @Test
+  void shouldCreditExecutedTradesOnceDelivered() {
+    outbox = new TradeOutbox(null, 100, 100, 10, tradeProxy, balanceLedger);
+    outbox.enqueue(trade("user1", 1));
+    outbox.enqueue(trade("user1", 2));
+    Mockito.when(tradeProxy.executeTrades(anyString(), anyList())).thenReturn(List.of(
+      new TradeResult(0, trade("user1", 1), null),
+      new TradeResult(1, null, "Idempotency key already used for another trade")));
+
+    outbox.drain();
+
+    Mockito.verify(balanceLedger).credit(trade("user1", 1));
+    Mockito.verify(balanceLedger, Mockito.never()).credit(trade("user1", 2));
+  }
+
+  @Test
+  void shouldSendEachTradeWithItsOwnKey() {
+    outbox = new TradeOutbox(null, 100, 100, 10, tradeProxy, balanceLedger);
+    outbox.enqueue(trade("user1", 1));
+    Mockito.when(tradeProxy.executeTrades(anyString(), anyList()))
+      .thenThrow(new ProcessingException("Read timed out"))
+      .thenReturn(List.of());
+
+    assertThrows(ProcessingException.class, () -> outbox.drain());
+    // A trade queued before the retry does not change the key of the first one
+    outbox.enqueue(trade("user1", 2));
+    outbox.drain();
+
+    ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+    Mockito.verify(tradeProxy, Mockito.times(2)).executeTrades(keys.capture(), any());
+    assertEquals(trade("user1", 1).idempotencyKey(), keys.getAllValues().get(0));
+    assertEquals(trade("user1", 1).idempotencyKey() + "," + trade("user1", 2).idempotencyKey(), keys.getAllValues().get(1));
+    assertEquals(0, outbox.size());
+  }
+
+  @Test
+  void shouldDropOnlyTheTradesRefusedForGood() {
+    Path path = directory.resolve("outbox.log");
+    outbox = new TradeOutbox(path, 100, 100, 10, tradeProxy, balanceLedger);
+    for (int i = 1; i <= 3; i++) {
+      outbox.enqueue(trade("user1", i));
+    }
+    Mockito.when(tradeProxy.executeTrades(anyString(), anyList())).thenAnswer(invocation -> {
+      List<Trade> trades = invocation.getArgument(1);
+      if (trades.contains(trade("user1", 2))) {
+        throw new WebApplicationException(400);
+      }
+      return List.of(new TradeResult(0, trades.getFirst(), null));
+    });
+
+    outbox.drain();
+
+    Mockito.verify(balanceLedger).credit(trade("user1", 1));
+    Mockito.verify(balanceLedger).credit(trade("user1", 3));
+    Mockito.verify(balanceLedger, Mockito.never()).credit(trade("user1", 2));
+    assertEquals(0, outbox.size());
+    outbox.close();
+    outbox = new TradeOutbox(path, 100, 100, 10, tradeProxy, balanceLedger);
+    assertEquals(0, outbox.size());
+  }
+
+  @Test
+  void shouldKeepTradesWhileTradesServiceFails() {
+    outbox = new TradeOutbox(null, 100, 100, 10, tradeProxy, balanceLedger);
+    outbox.enqueue(trade("user1", 1));
+    Mockito.when(tradeProxy.executeTrades(anyString(), anyList()))
+      .thenThrow(new WebApplicationException(503))
+      .thenThrow(new WebApplicationException(409));
+
+    assertThrows(WebApplicationException.class, () -> outbox.drain());
+    assertThrows(WebApplicationException.class, () -> outbox.drain());
+    assertEquals(List.of(trade("user1", 1)), outbox.pending("user1"));
+  }
+
+  private static Trade trade(String userId, int amount) {
+    return new Trade(userId, null, BigDecimal.valueOf(amount), "EUR", null, new BigDecimal("0.92"), "CREATED");
+  }
+}
@@ -0,0 +1,74 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.portfolio.CachedRates;
+import com.pluralsight.currencyexchange.portfolio.PortfolioService;
+import com.pluralsight.currencyexchange.portfolio.trade.Trade;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+class PortfolioPageLoaderTest {
+
+  private final PortfolioService portfolioService = Mockito.mock(PortfolioService.class);
+  private final PortfolioPageLoader pageLoader = new PortfolioPageLoader(portfolioService, Duration.ofMillis(500));
+
+  @AfterEach
+  void close() {
+    pageLoader.close();
+  }
+
+  @Test
+  void shouldLoadSectionsConcurrently() {
+    Trade trade = new Trade("user1", BigDecimal.valueOf(100), "EUR", BigDecimal.valueOf(0.92));
+    Mockito.when(portfolioService.getUserPortfolio("user1")).thenAnswer(invocation -> sleep(300, List.of()));
+    Mockito.when(portfolioService.getCachedRates()).thenAnswer(invocation -> sleep(300, new CachedRates(List.of(), Instant.now(), false, 1)));
+    Mockito.when(portfolioService.getAllTrades("user1")).thenAnswer(invocation -> sleep(300, List.of(trade)));
+
+    long start = System.nanoTime();
+    PortfolioPage page = pageLoader.load("user1");
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(List.of(trade), page.trades());
+    assertEquals(List.of(), page.unavailable());
+    assertTrue(elapsedMillis < 600, "Page loaded in " + elapsedMillis + " ms");
+  }
+
+  @Test
+  void shouldRenderWithoutSlowSectionAfterDeadline() {
+    Mockito.when(portfolioService.getUserPortfolio("user1")).thenReturn(List.of());
+    Mockito.when(portfolioService.getCachedRates()).thenReturn(new CachedRates(List.of(), Instant.now(), false, 1));
+    Mockito.when(portfolioService.getAllTrades("user1")).thenAnswer(invocation -> sleep(10_000, List.of()));
+
+    long start = System.nanoTime();
+    PortfolioPage page = pageLoader.load("user1");
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(List.of("trades"), page.unavailable());
+    assertEquals(List.of(), page.trades());
+    assertTrue(elapsedMillis < 1_000, "Page loaded in " + elapsedMillis + " ms");
+  }
+
+  @Test
+  void shouldRenderWithoutFailedSection() {
+    Mockito.when(portfolioService.getUserPortfolio("user1")).thenReturn(List.of());
+    Mockito.when(portfolioService.getCachedRates()).thenThrow(new IllegalStateException("Currency service unavailable"));
+    Mockito.when(portfolioService.getAllTrades("user1")).thenReturn(List.of());
+
+    PortfolioPage page = pageLoader.load("user1");
+
+    assertEquals(List.of("rates"), page.unavailable());
+    assertTrue(page.rates().rates().isEmpty());
+  }
+
+  private static <T> T sleep(long millis, T result) throws InterruptedException {
+    Thread.sleep(millis);
+    return result;
+  }
+}
@@ -0,0 +1,52 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.portfolio.CachedRates;
+import com.pluralsight.currencyexchange.portfolio.Portfolio;
+import com.pluralsight.currencyexchange.portfolio.User;
+import com.pluralsight.currencyexchange.portfolio.trade.Trade;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+class PortfolioPageTest {
+
+  private static final User JOHN = User.byEmail("john.doe@example.com");
+  private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 31, 12, 0);
+  private static final Portfolio EUR = new Portfolio(2L, JOHN, "EUR", BigDecimal.valueOf(85.0), NOW);
+  private static final Trade TRADE = new Trade(JOHN.email(), NOW, BigDecimal.TEN, "EUR", new BigDecimal("9.2"), new BigDecimal("0.92"), "COMPLETED");
+
+  @Test
+  void shouldKeepEtagWhileNothingChanges() {
+    PortfolioPage page = page(1, List.of(EUR), List.of(TRADE));
+
+    assertEquals(page.etag(JOHN, "session", "csrf"), page(1, List.of(EUR), List.of(TRADE)).etag(JOHN, "session", "csrf"));
+    assertEquals(page.etag(JOHN, "session", "csrf"), page.etag(User.byEmail("john.doe@example.com"), "session", "csrf"));
+  }
+
+  @Test
+  void shouldChangeEtagWithRatesTradesAndBalances() {
+    String etag = page(1, List.of(EUR), List.of(TRADE)).etag(JOHN, "session", "csrf");
+
+    assertNotEquals(etag, page(2, List.of(EUR), List.of(TRADE)).etag(JOHN, "session", "csrf"));
+    assertNotEquals(etag, page(1, List.of(EUR), List.of(TRADE, TRADE)).etag(JOHN, "session", "csrf"));
+    assertNotEquals(etag, page(1, List.of(new Portfolio(2L, JOHN, "EUR", BigDecimal.valueOf(94.2), NOW)), List.of(TRADE)).etag(JOHN, "session", "csrf"));
+    assertNotEquals(etag, page(1, List.of(EUR), List.of(TRADE)).etag(User.byEmail("jane.smith@example.com"), "session", "csrf"));
+  }
+
+  @Test
+  void shouldChangeEtagWithSessionAndCsrfToken() {
+    PortfolioPage page = page(1, List.of(EUR), List.of(TRADE));
+    String etag = page.etag(JOHN, "session", "csrf");
+
+    assertNotEquals(etag, page.etag(JOHN, "other session", "csrf"));
+    assertNotEquals(etag, page.etag(JOHN, "session", "other csrf"));
+  }
+
+  private static PortfolioPage page(long ratesVersion, List<Portfolio> portfolios, List<Trade> trades) {
+    return new PortfolioPage(portfolios, new CachedRates(List.of(), null, false, ratesVersion), trades, List.of());
+  }
+}
@@ -0,0 +1,36 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.currency.CurrencyRate;
+import com.pluralsight.currencyexchange.portfolio.CachedRates;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class RatesFragmentCacheTest {
+
+  private final AtomicInteger renders = new AtomicInteger();
+  private final RatesFragmentCache fragmentCache = new RatesFragmentCache(rates -> {
+    renders.incrementAndGet();
+    return "<div>" + rates.getFirst().getRate() + "</div>";
+  });
+
+  @Test
+  void shouldRenderOncePerTick() {
+    CachedRates tick1 = rates(0.92, 1);
+
+    assertEquals("<div>0.92</div>", fragmentCache.render(tick1).getValue());
+    assertSame(fragmentCache.render(tick1), fragmentCache.render(new CachedRates(tick1.rates(), tick1.receivedAt(), true, 1)));
+    assertEquals(1, renders.get());
+
+    assertEquals("<div>0.93</div>", fragmentCache.render(rates(0.93, 2)).getValue());
+    assertEquals(2, renders.get());
+  }
+
+  private static CachedRates rates(double eur, long version) {
+    return new CachedRates(List.of(CurrencyRate.newBuilder().setCurrencyCode("EUR").setRate(eur).build()), Instant.now(), false, version);
+  }
+}
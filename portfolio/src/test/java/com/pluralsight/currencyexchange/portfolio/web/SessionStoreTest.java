@@ -0,0 +1,161 @@
+package com.pluralsight.currencyexchange.portfolio.web;
+
+import com.pluralsight.currencyexchange.portfolio.User;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+class SessionStoreTest {
+
+  private static final User JOHN = User.byEmail("john.doe@example.com");
+  private static final User JANE = User.byEmail("jane.smith@example.com");
+
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  void shouldKeepOneSessionPerToken() {
+    SessionStore sessions = new SessionStore(Duration.ofMinutes(30), 100, null, clock);
+    String john = sessions.create(JOHN);
+    String jane = sessions.create(JANE);
+
+    assertEquals(JOHN, sessions.find(john).user());
+    assertEquals(JANE, sessions.find(jane).user());
+    assertEquals(john, sessions.find(john).token());
+    assertNull(sessions.find("unknown"));
+    assertNull(sessions.find(null));
+
+    sessions.remove(john);
+    assertNull(sessions.find(john));
+    assertEquals(JANE, sessions.find(jane).user());
+  }
+
+  @Test
+  void shouldEvictIdleSessions() {
+    SessionStore sessions = new SessionStore(Duration.ofMinutes(30), 100, null, clock);
+    String active = sessions.create(JOHN);
+    String idle = sessions.create(JANE);
+
+    clock.advance(Duration.ofMinutes(20));
+    sessions.find(active);
+    clock.advance(Duration.ofMinutes(20));
+
+    assertEquals(JOHN, sessions.find(active).user());
+    assertNull(sessions.find(idle));
+    assertEquals(1, sessions.size());
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedSessionsWhenFull() {
+    SessionStore sessions = new SessionStore(Duration.ofMinutes(30), 3, null, clock);
+    String oldest = sessions.create(JOHN);
+    clock.advance(Duration.ofSeconds(1));
+    String recent = sessions.create(JANE);
+    clock.advance(Duration.ofSeconds(1));
+    String used = sessions.create(JOHN);
+    clock.advance(Duration.ofSeconds(1));
+    sessions.find(oldest);
+
+    sessions.create(JANE);
+
+    assertEquals(3, sessions.size());
+    assertNull(sessions.find(recent));
+    assertEquals(JOHN, sessions.find(oldest).user());
+    assertEquals(JOHN, sessions.find(used).user());
+  }
+
+  @Test
+  void shouldServeSignedCookiesFromAnyInstanceSharingTheSecret() {
+    SessionStore instance1 = new SessionStore(Duration.ofMinutes(30), 100, "secret", clock);
+    SessionStore instance2 = new SessionStore(Duration.ofMinutes(30), 100, "secret", clock);
+    SessionStore otherSecret = new SessionStore(Duration.ofMinutes(30), 100, "other", clock);
+
+    String token = instance1.create(JANE);
+
+    assertEquals(JANE, instance2.find(token).user());
+    assertNull(otherSecret.find(token));
+    assertEquals(0, instance1.size());
+  }
+
+  @Test
+  void shouldRejectTamperedSignedCookies() {
+    SessionStore sessions = new SessionStore(Duration.ofMinutes(30), 100, "secret", clock);
+    String token = sessions.create(JANE);
+    String john = sessions.create(JOHN);
+
+    // Jane's signature on John's user and issue time
+    String forged = john.substring(0, john.lastIndexOf('.')) + token.substring(token.lastIndexOf('.'));
+    assertNull(sessions.find(forged));
+    assertNull(sessions.find("not.a.token"));
+    assertNull(sessions.find("garbage"));
+  }
+
+  @Test
+  void shouldReissueSignedCookiesUntilIdle() {
+    SessionStore sessions = new SessionStore(Duration.ofMinutes(30), 100, "secret", clock);
+    String token = sessions.create(JOHN);
+
+    clock.advance(Duration.ofMinutes(20));
+    String reissued = sessions.find(token).token();
+    assertNotEquals(token, reissued);
+
+    clock.advance(Duration.ofMinutes(20));
+    assertNull(sessions.find(token));
+    assertEquals(JOHN, sessions.find(reissued).user());
+  }
+
+  @Test
+  void shouldRevokeSignedCookiesOnSignOut() {
+    SessionStore sessions = new SessionStore(Duration.ofMinutes(30), 100, "secret", clock);
+    String john = sessions.create(JOHN);
+    String otherJohn = sessions.create(JOHN);
+    String jane = sessions.create(JANE);
+
+    sessions.remove(john);
+    assertNull(sessions.find(john));
+    assertNull(sessions.find(otherJohn));
+    assertEquals(JANE, sessions.find(jane).user());
+
+    // Signing in again, even within the same millisecond, starts a valid session
+    assertEquals(JOHN, sessions.find(sessions.create(JOHN)).user());
+    clock.advance(Duration.ofMinutes(1));
+    assertEquals(JOHN, sessions.find(sessions.create(JOHN)).user());
+    assertNull(sessions.find(john));
+  }
+
+  @Test
+  void shouldRequireSecretForSignedCookies() {
+    assertThrows(IllegalStateException.class, () -> new SessionStore(Duration.ofMinutes(30), 100, " ", clock));
+  }
+
+  private static class MutableClock extends Clock {
+
+    private Instant instant = Instant.parse("2025-01-31T12:00:00Z");
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package com.pluralsight.currencyexchange.trade;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trades stored column-wise in primitive arrays, about 40 bytes per trade:
+ * <ul>
+ * <li>timestamps as epoch milliseconds (UTC), to the millisecond</li>
+ * <li>amounts and rates as fixed-point longs, with their scale, so they are materialized back exactly</li>
+ * <li>currency and status as codes of a shared dictionary</li>
+ * </ul>
+ * The user ID is the one of the log. The rare trades that do not fit (amounts beyond a long, dates hundreds of
+ * millions of years away, too many distinct codes) are kept as objects on the side.
+ */
+final class CompactTradeColumns implements TradeColumns {
+
+  private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+  private static final byte NULL_SCALE = Byte.MIN_VALUE;
+  private static final byte NULL_CODE = 0;
+  private static final byte OVERFLOW_CODE = -1;
+  private static final long MILLIS_PER_SECOND = 1_000L;
+  private static final int NANOS_PER_MILLI = 1_000_000;
+
+  private static final Codes CODES = new Codes();
+
+  private final long[] timestampMillis;
+  private final long[] usdAmounts;
+  private final byte[] usdAmountScales;
+  private final long[] convertedAmounts;
+  private final byte[] convertedAmountScales;
+  private final long[] exchangeRates;
+  private final byte[] exchangeRateScales;
+  private final byte[] currencyCodes;
+  private final byte[] statusCodes;
+  // Trades that do not fit in the columns, by position
+  private final Map<Integer, Trade> overflow;
+
+  CompactTradeColumns(int capacity) {
+    this(new long[capacity], new long[capacity], new byte[capacity], new long[capacity], new byte[capacity],
+      new long[capacity], new byte[capacity], new byte[capacity], new byte[capacity], new ConcurrentHashMap<>());
+  }
+
+  private CompactTradeColumns(long[] timestampMillis, long[] usdAmounts, byte[] usdAmountScales, long[] convertedAmounts,
+                              byte[] convertedAmountScales, long[] exchangeRates, byte[] exchangeRateScales,
+                              byte[] currencyCodes, byte[] statusCodes, Map<Integer, Trade> overflow) {
+    this.timestampMillis = timestampMillis;
+    this.usdAmounts = usdAmounts;
+    this.usdAmountScales = usdAmountScales;
+    this.convertedAmounts = convertedAmounts;
+    this.convertedAmountScales = convertedAmountScales;
+    this.exchangeRates = exchangeRates;
+    this.exchangeRateScales = exchangeRateScales;
+    this.currencyCodes = currencyCodes;
+    this.statusCodes = statusCodes;
+    this.overflow = overflow;
+  }
+
+  @Override
+  public int capacity() {
+    return timestampMillis.length;
+  }
+
+  @Override
+  public TradeColumns grow(int capacity) {
+    return new CompactTradeColumns(Arrays.copyOf(timestampMillis, capacity),
+      Arrays.copyOf(usdAmounts, capacity), Arrays.copyOf(usdAmountScales, capacity),
+      Arrays.copyOf(convertedAmounts, capacity), Arrays.copyOf(convertedAmountScales, capacity),
+      Arrays.copyOf(exchangeRates, capacity), Arrays.copyOf(exchangeRateScales, capacity),
+      Arrays.copyOf(currencyCodes, capacity), Arrays.copyOf(statusCodes, capacity), overflow);
+  }
+
+  @Override
+  public void set(int position, Trade trade) {
+    byte currencyCode = CODES.encode(trade.toCurrency());
+    byte statusCode = CODES.encode(trade.status());
+    if (!fits(trade.timestamp()) || !fits(trade.usdAmount()) || !fits(trade.convertedAmount()) || !fits(trade.exchangeRate())
+      || currencyCode == OVERFLOW_CODE || statusCode == OVERFLOW_CODE) {
+      currencyCodes[position] = OVERFLOW_CODE;
+      overflow.put(position, trade);
+      return;
+    }
+
+    timestampMillis[position] = trade.timestamp() == null ? NULL_TIMESTAMP : toEpochMillis(trade.timestamp());
+    usdAmounts[position] = unscaled(trade.usdAmount());
+    usdAmountScales[position] = scale(trade.usdAmount());
+    convertedAmounts[position] = unscaled(trade.convertedAmount());
+    convertedAmountScales[position] = scale(trade.convertedAmount());
+    exchangeRates[position] = unscaled(trade.exchangeRate());
+    exchangeRateScales[position] = scale(trade.exchangeRate());
+    currencyCodes[position] = currencyCode;
+    statusCodes[position] = statusCode;
+  }
+
+  @Override
+  public Trade get(int position, String userId) {
+    if (currencyCodes[position] == OVERFLOW_CODE) {
+      return overflow.get(position);
+    }
+    long millis = timestampMillis[position];
+    return new Trade(userId,
+      millis == NULL_TIMESTAMP ? null
+        : LocalDateTime.ofEpochSecond(Math.floorDiv(millis, MILLIS_PER_SECOND), (int) Math.floorMod(millis, MILLIS_PER_SECOND) * NANOS_PER_MILLI, ZoneOffset.UTC),
+      decimal(usdAmounts[position], usdAmountScales[position]),
+      CODES.decode(currencyCodes[position]),
+      decimal(convertedAmounts[position], convertedAmountScales[position]),
+      decimal(exchangeRates[position], exchangeRateScales[position]),
+      CODES.decode(statusCodes[position]));
+  }
+
+  private static boolean fits(LocalDateTime timestamp) {
+    if (timestamp == null) {
+      return true;
+    }
+    try {
+      return toEpochMillis(timestamp) != NULL_TIMESTAMP;
+    } catch (ArithmeticException e) {
+      return false;
+    }
+  }
+
+  private static long toEpochMillis(LocalDateTime timestamp) {
+    return Math.addExact(Math.multiplyExact(timestamp.toEpochSecond(ZoneOffset.UTC), MILLIS_PER_SECOND), timestamp.getNano() / NANOS_PER_MILLI);
+  }
+
+  private static boolean fits(BigDecimal value) {
+    return value == null
+      || (value.unscaledValue().bitLength() < Long.SIZE && value.scale() > NULL_SCALE && value.scale() <= Byte.MAX_VALUE);
+  }
+
+  private static long unscaled(BigDecimal value) {
+    return value == null ? 0 : value.unscaledValue().longValue();
+  }
+
+  private static byte scale(BigDecimal value) {
+    return value == null ? NULL_SCALE : (byte) value.scale();
+  }
+
+  private static BigDecimal decimal(long unscaled, byte scale) {
+    return scale == NULL_SCALE ? null : BigDecimal.valueOf(unscaled, scale);
+  }
+
+  /**
+   * Dictionary of the currency and status codes, shared by every log. Code 0 stands for {@code null},
+   * and there is room for 254 distinct values.
+   */
+  static final class Codes {
+
+    private static final int MAX_CODES = 254;
+
+    private final Map<String, Byte> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[MAX_CODES + 1];
+    private int count;
+
+    byte encode(String value) {
+      if (value == null) {
+        return NULL_CODE;
+      }
+      Byte code = codes.get(value);
+      return code != null ? code : register(value);
+    }
+
+    String decode(byte code) {
+      return values[Byte.toUnsignedInt(code)];
+    }
+
+    private synchronized byte register(String value) {
+      Byte code = codes.get(value);
+      if (code != null) {
+        return code;
+      }
+      if (count == MAX_CODES) {
+        return OVERFLOW_CODE;
+      }
+      count++;
+      String[] newValues = values.clone();
+      newValues[count] = value;
+      // Publishes the value before its code
+      values = newValues;
+      codes.put(value, (byte) count);
+      return (byte) count;
+    }
+  }
+}
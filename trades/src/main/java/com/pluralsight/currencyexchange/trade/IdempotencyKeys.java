@@ -0,0 +1,203 @@
+package com.pluralsight.currencyexchange.trade;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of the idempotency keys of the recent requests, so a retried request is not executed twice,
+ * with the result of each executed request to answer its retries.
+ * Keys are spread over lock-striped segments, each one a map in insertion order. As every key lives for the
+ * same time, insertion order is also expiry order: expired keys are evicted from the head of the segment,
+ * and so are the oldest completed keys once the segment is full. A key in progress is never evicted, so a
+ * segment only goes over its share of {@code trades.idempotency.max-keys} with requests still being executed.
+ * <p>
+ * The dedupe window is therefore {@code trades.idempotency.ttl} or the time it takes to receive
+ * {@code trades.idempotency.max-keys} keys, whichever is shorter: 100,000 keys only last 24 hours below
+ * about 1 request per second. A warning is logged the first time a key is evicted before its TTL.
+ */
+@ApplicationScoped
+public class IdempotencyKeys {
+
+  private static final Logger LOG = Logger.getLogger(IdempotencyKeys.class);
+
+  private static final int SEGMENTS = 64;
+
+  public enum Claim {
+    /** First time the key is seen, the request has to be executed */
+    NEW,
+    /** The request was already executed */
+    DUPLICATE,
+    /** The request is being executed by another call */
+    IN_PROGRESS,
+    /** The key was already used for another request */
+    MISMATCH
+  }
+
+  @ConfigProperty(name = "trades.idempotency.max-keys", defaultValue = "100000")
+  int maxKeys;
+
+  @ConfigProperty(name = "trades.idempotency.ttl", defaultValue = "24H")
+  Duration ttl;
+
+  /**
+   * How a key was claimed, with the result of the request when it is a {@code DUPLICATE}.
+   */
+  public record Claimed(Claim claim, Object result) {
+  }
+
+  private final LongSupplier nanoTime;
+  private final AtomicBoolean evictedBeforeTtl = new AtomicBoolean();
+  private Segment[] segments;
+
+  IdempotencyKeys() {
+    this.nanoTime = System::nanoTime;
+  }
+
+  IdempotencyKeys(int maxKeys, Duration ttl, LongSupplier nanoTime) {
+    this.maxKeys = maxKeys;
+    this.ttl = ttl;
+    this.nanoTime = nanoTime;
+    init();
+  }
+
+  @PostConstruct
+  void init() {
+    int segmentCapacity = Math.max(1, (maxKeys + SEGMENTS - 1) / SEGMENTS);
+    segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(segmentCapacity);
+    }
+  }
+
+  /**
+   * Claims the key for the request, identified by its content.
+   */
+  public Claim claim(String key, Object request) {
+    return claimWithResult(key, request).claim();
+  }
+
+  /**
+   * Claims the key for the request, identified by its content, and returns the result of the request if it was already executed.
+   */
+  public Claimed claimWithResult(String key, Object request) {
+    return segment(key).claim(key, request, nanoTime.getAsLong(), ttl.toNanos(), this::evictedBeforeTtl);
+  }
+
+  /**
+   * Marks the request of the key as executed with its result, so repeats are reported as duplicates and get the same result.
+   */
+  public void complete(String key, Object result) {
+    segment(key).complete(key, result);
+  }
+
+  /**
+   * Forgets the key of a failed request, so it can be retried.
+   */
+  public void release(String key) {
+    segment(key).release(key);
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  private void evictedBeforeTtl() {
+    if (evictedBeforeTtl.compareAndSet(false, true)) {
+      LOG.warn("Idempotency keys are evicted before their TTL of " + ttl + ", retries are only deduplicated for the last "
+        + maxKeys + " keys: raise trades.idempotency.max-keys to cover the TTL");
+    }
+  }
+
+  private Segment segment(String key) {
+    int hash = key.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+  }
+
+  private static final class Entry {
+
+    final Object request;
+    final long expiresAtNanos;
+    boolean completed;
+    Object result;
+
+    Entry(Object request, long expiresAtNanos) {
+      this.request = request;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  private static final class Segment {
+
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    Segment(int capacity) {
+      this.capacity = capacity;
+    }
+
+    synchronized Claimed claim(String key, Object request, long now, long ttlNanos, Runnable onEviction) {
+      evictExpired(now);
+
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        if (entries.size() >= capacity && evictOldestCompleted()) {
+          onEviction.run();
+        }
+        entries.put(key, new Entry(request, now + ttlNanos));
+        return new Claimed(Claim.NEW, null);
+      }
+      if (!Objects.equals(entry.request, request)) {
+        return new Claimed(Claim.MISMATCH, null);
+      }
+      return entry.completed ? new Claimed(Claim.DUPLICATE, entry.result) : new Claimed(Claim.IN_PROGRESS, null);
+    }
+
+    synchronized void complete(String key, Object result) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        entry.completed = true;
+        entry.result = result;
+      }
+    }
+
+    synchronized void release(String key) {
+      entries.remove(key);
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+
+    // Full, forget the oldest key that is not in progress: evicting one would let its retry execute the request again
+    private boolean evictOldestCompleted() {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().completed) {
+          iterator.remove();
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void evictExpired(long now) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext() && iterator.next().expiresAtNanos - now <= 0) {
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.pluralsight.currencyexchange.trade;
+
+import java.util.Arrays;
+
+/**
+ * Trades kept as they are, one object per trade.
+ */
+final class ObjectTradeColumns implements TradeColumns {
+
+  private final Trade[] trades;
+
+  ObjectTradeColumns(int capacity) {
+    this.trades = new Trade[capacity];
+  }
+
+  private ObjectTradeColumns(Trade[] trades) {
+    this.trades = trades;
+  }
+
+  @Override
+  public int capacity() {
+    return trades.length;
+  }
+
+  @Override
+  public TradeColumns grow(int capacity) {
+    return new ObjectTradeColumns(Arrays.copyOf(trades, capacity));
+  }
+
+  @Override
+  public void set(int position, Trade trade) {
+    trades[position] = trade;
+  }
+
+  @Override
+  public Trade get(int position, String userId) {
+    return trades[position];
+  }
+}
@@ -0,0 +1,22 @@
+package com.pluralsight.currencyexchange.trade;
+
+/**
+ * Storage of the trades of one user, by position in the user log.
+ * Implementations are not thread-safe: the log serializes writes, and publishes them to readers.
+ */
+interface TradeColumns {
+
+  int capacity();
+
+  /**
+   * Copy of the storage with a larger capacity.
+   */
+  TradeColumns grow(int capacity);
+
+  void set(int position, Trade trade);
+
+  /**
+   * Trade at the position, materialized for the user of the log.
+   */
+  Trade get(int position, String userId);
+}
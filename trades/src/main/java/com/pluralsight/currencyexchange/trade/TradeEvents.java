@@ -0,0 +1,98 @@
+package com.pluralsight.currencyexchange.trade;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.operators.multi.processors.BroadcastProcessor;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+
+/**
+ * Fan-out of the executed trades to the live subscribers, per user or for all users.
+ * Publishing only offers the trade to the channels that have subscribers, and never waits for them:
+ * each subscriber has its own bounded buffer, and a subscriber that lets it overflow is disconnected
+ * (it can catch up on the trade history and subscribe again).
+ */
+@ApplicationScoped
+public class TradeEvents {
+
+  private static final Logger LOG = Logger.getLogger(TradeEvents.class);
+
+  // Key of the channel of the trades of every user
+  private static final String ALL_USERS = "";
+
+  @ConfigProperty(name = "trades.events.buffer-size", defaultValue = "256")
+  int bufferSize;
+
+  private final ConcurrentMap<String, Channel> channels = new ConcurrentHashMap<>();
+
+  TradeEvents() {
+  }
+
+  TradeEvents(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Live trades of the user, or of every user when the user is {@code null}.
+   */
+  public Multi<Trade> subscribe(String userId) {
+    String key = userId == null ? ALL_USERS : userId;
+    return Multi.createFrom().deferred(() -> {
+        Channel channel = channels.compute(key, (k, existing) -> existing == null ? new Channel() : existing.retain());
+        return channel.trades
+          .onTermination().invoke(() -> release(key, channel));
+      })
+      .onOverflow().buffer(bufferSize)
+      .onFailure(BackPressureFailure.class).invoke(() -> LOG.warn("Disconnecting slow trade subscriber of " + (userId == null ? "all users" : userId)));
+  }
+
+  /**
+   * Offers the trade to its subscribers, without waiting for them.
+   */
+  void publish(Trade trade) {
+    Channel userChannel = channels.get(trade.userId());
+    if (userChannel != null) {
+      userChannel.processor.onNext(trade);
+    }
+    Channel allUsersChannel = channels.get(ALL_USERS);
+    if (allUsersChannel != null) {
+      allUsersChannel.processor.onNext(trade);
+    }
+  }
+
+  int subscriberCount(String userId) {
+    Channel channel = channels.get(userId == null ? ALL_USERS : userId);
+    return channel == null ? 0 : channel.subscribers;
+  }
+
+  private void release(String key, Channel channel) {
+    channels.computeIfPresent(key, (k, existing) -> existing != channel || --existing.subscribers > 0 ? existing : null);
+  }
+
+  /**
+   * Broadcast of the trades of a channel. Its subscriber count is only updated within the map compute functions.
+   */
+  private static final class Channel {
+
+    // Serialized, as trades are published concurrently
+    final Flow.Processor<Trade, Trade> processor;
+    final Multi<Trade> trades;
+    volatile int subscribers = 1;
+
+    Channel() {
+      BroadcastProcessor<Trade> broadcast = BroadcastProcessor.create();
+      this.processor = broadcast.serialized();
+      this.trades = broadcast;
+    }
+
+    Channel retain() {
+      subscribers++;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,329 @@
+package com.pluralsight.currencyexchange.trade;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the executed trades on local disk, replayed on startup.
+ * <pre>
+ * record: payload length (4 bytes) | payload | CRC32 of the payload (4 bytes)
+ * </pre>
+ * Appends return once the trade is on disk. Concurrent appends share their fsync (group commit):
+ * a writer that finds a sync in progress waits for it, then syncs every record written meanwhile at once.
+ * The locks are not monitors, so virtual threads waiting for a sync release their carrier thread.
+ * A record torn by a crash fails its length or checksum and is truncated at startup. A failed write is truncated right
+ * away, so later records stay replayable; if that or an fsync fails, the journal refuses every append until restarted.
+ * Replay maps the file one window at a time, so the journal can grow past 2 GB.
+ * Without {@code trades.journal.path}, trades are kept in memory only.
+ */
+@ApplicationScoped
+public class TradeJournal {
+
+  private static final Logger LOG = Logger.getLogger(TradeJournal.class);
+
+  private static final byte VERSION = 1;
+  private static final int MAX_RECORD_SIZE = 1024 * 1024;
+  private static final long REPLAY_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  @ConfigProperty(name = "trades.journal.path")
+  Optional<String> path;
+
+  private FileChannel channel;
+  private final long replayWindowSize;
+  private volatile IOException failure;
+  private final Lock writeLock = new ReentrantLock();
+  private final Lock syncLock = new ReentrantLock();
+  private volatile long writtenSequence;
+  private long syncedSequence;
+
+  TradeJournal() {
+    this.replayWindowSize = REPLAY_WINDOW_SIZE;
+  }
+
+  TradeJournal(Path path) {
+    this(path, REPLAY_WINDOW_SIZE);
+  }
+
+  TradeJournal(Path path, long replayWindowSize) {
+    this.path = Optional.of(path.toString());
+    this.replayWindowSize = replayWindowSize;
+    open();
+  }
+
+  @PostConstruct
+  void open() {
+    if (path.isEmpty()) {
+      LOG.info("No trade journal configured, trades are kept in memory only");
+      return;
+    }
+    Path journalPath = Path.of(path.get());
+    try {
+      if (journalPath.getParent() != null) {
+        Files.createDirectories(journalPath.getParent());
+      }
+      channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      channel.position(channel.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open trade journal " + journalPath, e);
+    }
+    LOG.info("Journaling trades to " + journalPath);
+  }
+
+  /**
+   * Replays every trade of the journal in order, then positions the journal for appends
+   * after the last complete record.
+   */
+  void replay(Consumer<Trade> consumer) {
+    if (channel == null) {
+      return;
+    }
+    long position = 0;
+    int count = 0;
+    try {
+      long size = channel.size();
+      MappedByteBuffer window = null;
+      long windowStart = 0;
+      CRC32 crc = new CRC32();
+      while (position + Integer.BYTES <= size) {
+        // A record never spans two windows: the window moves to the start of a record that does not fit
+        if (window == null || position + Integer.BYTES > windowStart + window.limit()) {
+          window = map(position, position + Integer.BYTES, size);
+          windowStart = position;
+        }
+        int length = window.getInt((int) (position - windowStart));
+        long end = position + Integer.BYTES + length + Integer.BYTES;
+        if (length <= 0 || length > MAX_RECORD_SIZE || end > size) {
+          break;
+        }
+        if (end > windowStart + window.limit()) {
+          window = map(position, end, size);
+          windowStart = position;
+        }
+        int offset = (int) (position - windowStart);
+        byte[] payload = new byte[length];
+        window.get(offset + Integer.BYTES, payload);
+        crc.reset();
+        crc.update(payload);
+        if ((int) crc.getValue() != window.getInt(offset + Integer.BYTES + length)) {
+          break;
+        }
+        consumer.accept(decode(payload));
+        position = end;
+        count++;
+      }
+
+      if (position < size) {
+        LOG.warn("Truncating " + (size - position) + " bytes of incomplete records at the end of the trade journal");
+        channel.truncate(position);
+      }
+      channel.position(position);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot recover trade journal", e);
+    }
+    LOG.info("Replayed " + count + " trades from the journal");
+  }
+
+  // Maps a window from the position, at least up to the end, never past the end of the file
+  private MappedByteBuffer map(long position, long end, long size) throws IOException {
+    long length = Math.min(Math.max(replayWindowSize, end - position), size - position);
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+  }
+
+  /**
+   * Appends the trade and waits until it is on disk.
+   */
+  void append(Trade trade) {
+    appendAll(List.of(trade));
+  }
+
+  /**
+   * Appends the trades with a single write, and waits until they are on disk.
+   */
+  void appendAll(List<Trade> trades) {
+    if (channel == null || trades.isEmpty()) {
+      return;
+    }
+    ByteBuffer records;
+    if (trades.size() == 1) {
+      records = encode(trades.getFirst());
+    } else {
+      List<ByteBuffer> encoded = new ArrayList<>(trades.size());
+      int size = 0;
+      for (Trade trade : trades) {
+        ByteBuffer record = encode(trade);
+        encoded.add(record);
+        size += record.remaining();
+      }
+      records = ByteBuffer.allocate(size);
+      encoded.forEach(records::put);
+      records.flip();
+    }
+
+    try {
+      long sequence;
+      writeLock.lock();
+      try {
+        checkNotFailed();
+        long start = channel.position();
+        try {
+          while (records.hasRemaining()) {
+            channel.write(records);
+          }
+        } catch (IOException e) {
+          rollBack(start, e);
+          throw e;
+        }
+        sequence = ++writtenSequence;
+      } finally {
+        writeLock.unlock();
+      }
+      syncLock.lock();
+      try {
+        if (syncedSequence < sequence) {
+          checkNotFailed();
+          // Every write up to this sequence is complete, so one fsync makes them all durable
+          long lastWritten = writtenSequence;
+          try {
+            channel.force(false);
+          } catch (IOException e) {
+            // Which of the written records reached the disk is unknown, none of them can be acknowledged
+            fail(e);
+            throw e;
+          }
+          syncedSequence = lastWritten;
+        }
+      } finally {
+        syncLock.unlock();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot journal " + trades.size() + " trades", e);
+    }
+  }
+
+  /**
+   * Removes what a failed write left of its records, otherwise replay would stop there and drop every later record.
+   * Called with the write lock held.
+   */
+  private void rollBack(long start, IOException writeFailure) {
+    try {
+      channel.truncate(start);
+      channel.position(start);
+    } catch (IOException e) {
+      writeFailure.addSuppressed(e);
+      fail(writeFailure);
+    }
+  }
+
+  private void fail(IOException e) {
+    failure = e;
+    LOG.error("Trade journal failed, no trade can be journaled until restart", e);
+  }
+
+  private void checkNotFailed() throws IOException {
+    IOException failed = failure;
+    if (failed != null) {
+      throw new IOException("Trade journal failed, no trade can be journaled until restart", failed);
+    }
+  }
+
+  @PreDestroy
+  void close() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOG.warn("Cannot close trade journal", e);
+    }
+  }
+
+  static ByteBuffer encode(Trade trade) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeByte(VERSION);
+      output.writeUTF(trade.userId());
+      writeNullable(output, trade.timestamp() == null ? null : trade.timestamp().toString());
+      writeNullable(output, trade.usdAmount() == null ? null : trade.usdAmount().toString());
+      writeNullable(output, trade.toCurrency());
+      writeNullable(output, trade.convertedAmount() == null ? null : trade.convertedAmount().toString());
+      writeNullable(output, trade.exchangeRate() == null ? null : trade.exchangeRate().toString());
+      writeNullable(output, trade.status());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    byte[] payload = bytes.toByteArray();
+    if (payload.length > MAX_RECORD_SIZE) {
+      throw new IllegalArgumentException("Trade too large to journal: " + payload.length + " bytes");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return ByteBuffer.allocate(Integer.BYTES + payload.length + Integer.BYTES)
+      .putInt(payload.length)
+      .put(payload)
+      .putInt((int) crc.getValue())
+      .flip();
+  }
+
+  static Trade decode(byte[] payload) {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload))) {
+      byte version = input.readByte();
+      if (version != VERSION) {
+        throw new IllegalStateException("Unsupported trade journal record version: " + version);
+      }
+      String userId = input.readUTF();
+      String timestamp = readNullable(input);
+      String usdAmount = readNullable(input);
+      String toCurrency = readNullable(input);
+      String convertedAmount = readNullable(input);
+      String exchangeRate = readNullable(input);
+      String status = readNullable(input);
+      return new Trade(userId,
+        timestamp == null ? null : LocalDateTime.parse(timestamp),
+        usdAmount == null ? null : new BigDecimal(usdAmount),
+        toCurrency,
+        convertedAmount == null ? null : new BigDecimal(convertedAmount),
+        exchangeRate == null ? null : new BigDecimal(exchangeRate),
+        status);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeNullable(DataOutputStream output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static String readNullable(DataInputStream input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+}
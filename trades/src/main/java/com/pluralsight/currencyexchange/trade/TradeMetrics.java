@@ -0,0 +1,94 @@
+package com.pluralsight.currencyexchange.trade;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and gauges of the trades, updated as trades are executed and read in constant time,
+ * by the health checks and through Micrometer.
+ */
+@ApplicationScoped
+public class TradeMetrics {
+
+  // Bounds the number of currency tags, as currencies are sent by the clients
+  private static final int MAX_CURRENCY_TAGS = 32;
+  private static final String OTHER_CURRENCY = "other";
+
+  @Inject
+  MeterRegistry meterRegistry;
+
+  private final LongAdder executedTrades = new LongAdder();
+  private final ConcurrentMap<String, Counter> executedTradesByCurrency = new ConcurrentHashMap<>();
+  private final AtomicLong lastTradeEpochMillis = new AtomicLong();
+  private TradeStore tradeStore;
+
+  TradeMetrics() {
+  }
+
+  TradeMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Exposes the size of the store, once it is recovered.
+   */
+  void bind(TradeStore tradeStore) {
+    this.tradeStore = tradeStore;
+    Gauge.builder("mymetric_trades_stored", tradeStore, TradeStore::tradeCount)
+      .description("Trades in the history")
+      .register(meterRegistry);
+    Gauge.builder("mymetric_trades_users", tradeStore, TradeStore::userCount)
+      .description("Users with trades in the history")
+      .register(meterRegistry);
+    Gauge.builder("mymetric_trades_last_write_seconds", lastTradeEpochMillis, millis -> millis.get() / 1_000.0)
+      .description("Time of the last executed trade, in seconds since the epoch")
+      .register(meterRegistry);
+  }
+
+  void recordExecuted(Trade trade) {
+    executedTrades.increment();
+    currencyCounter(trade.toCurrency()).increment();
+    lastTradeEpochMillis.set(System.currentTimeMillis());
+  }
+
+  long executedTrades() {
+    return executedTrades.sum();
+  }
+
+  long storedTrades() {
+    return tradeStore == null ? 0 : tradeStore.tradeCount();
+  }
+
+  int users() {
+    return tradeStore == null ? 0 : tradeStore.userCount();
+  }
+
+  /**
+   * Time of the last executed trade, {@code null} before the first one.
+   */
+  Instant lastTradeTime() {
+    long millis = lastTradeEpochMillis.get();
+    return millis == 0 ? null : Instant.ofEpochMilli(millis);
+  }
+
+  private Counter currencyCounter(String currency) {
+    Counter counter = currency == null ? null : executedTradesByCurrency.get(currency);
+    if (counter != null) {
+      return counter;
+    }
+    String tag = currency != null && executedTradesByCurrency.size() < MAX_CURRENCY_TAGS ? currency : OTHER_CURRENCY;
+    return executedTradesByCurrency.computeIfAbsent(tag, key -> Counter.builder("mymetric_trades_executed")
+      .description("Trades executed since startup")
+      .tag("currency", key)
+      .register(meterRegistry));
+  }
+}
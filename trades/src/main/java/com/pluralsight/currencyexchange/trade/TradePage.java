@@ -0,0 +1,9 @@
+package com.pluralsight.currencyexchange.trade;
+
+import java.util.List;
+
+/**
+ * Page of a trade history, with the cursor of the next page ({@code null} on the last page).
+ */
+public record TradePage(List<Trade> trades, Integer nextCursor) {
+}
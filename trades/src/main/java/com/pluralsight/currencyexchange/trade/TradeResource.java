@@ -1,49 +1,280 @@
 package com.pluralsight.currencyexchange.trade;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.resteasy.reactive.RestResponse;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Trades executed wait for the journal, so they run on virtual threads, which park instead of holding a worker thread.
+ * The history and summary are read from memory without blocking, so they are served on the event loop,
+ * except a history of more than {@value #EVENT_LOOP_PAGE_SIZE} trades, all of them or a large page: it is read and serialized
+ * on a worker thread, so a response never holds the event loop for long.
+ */
 @Path("/api/trades")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 @Tag(name = "Trades", description = "Currency exchange trade operations")
 public class TradeResource {
 
+  static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+  static final int EVENT_LOOP_PAGE_SIZE = 10_000;
+  static final int MAX_BATCH_SIZE = 100_000;
+  static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+  static final String IDEMPOTENCY_KEYS_HEADER = "Idempotency-Keys";
+  static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
   @Inject
   TradeService tradeService;
 
+  @Inject
+  TradeEvents tradeEvents;
+
+  @Inject
+  ObjectMapper objectMapper;
+
   @POST
-  @Operation(summary = "Execute a currency trade", description = "Executes a USD-based currency exchange trade")
+  @Operation(summary = "Execute a currency trade", description = "Executes a USD-based currency exchange trade. " +
+    "With an " + IDEMPOTENCY_KEY_HEADER + " header, a repeated request is acknowledged without executing the trade again")
   @APIResponses(value = {
     @APIResponse(responseCode = "204", description = "Trade executed successfully"),
-    @APIResponse(responseCode = "400", description = "Invalid trade data")
+    @APIResponse(responseCode = "400", description = "Invalid trade data"),
+    @APIResponse(responseCode = "409", description = "A trade with the same idempotency key is being executed"),
+    @APIResponse(responseCode = "422", description = "The idempotency key was already used for another trade")
+  })
+  @RunOnVirtualThread
+  public void executeTrade(@Parameter(description = "Unique key of the trade, to safely retry it") @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                           @RequestBody(description = "Trade to execute") Trade trade) {
+    String error = TradeService.validate(trade);
+    if (error != null) {
+      throw new BadRequestException(error);
+    }
+    if (idempotencyKey == null) {
+      tradeService.executeTrade(trade);
+      return;
+    }
+    checkIdempotencyKey(idempotencyKey);
+
+    switch (tradeService.executeTrade(idempotencyKey, trade)) {
+      case NEW, DUPLICATE -> {
+      }
+      case IN_PROGRESS -> throw new ClientErrorException("Trade with the same " + IDEMPOTENCY_KEY_HEADER + " in progress", Response.Status.CONFLICT);
+      case MISMATCH -> throw new ClientErrorException(IDEMPOTENCY_KEY_HEADER + " already used for another trade", 422);
+    }
+  }
+
+  @POST
+  @Path("/batch")
+  @Operation(summary = "Execute a batch of currency trades", description = "Executes a JSON array of trades in one pass, and returns the result of each trade in order. " +
+    "With an " + IDEMPOTENCY_KEY_HEADER + " header, a repeated batch gets the same results without being executed again. " +
+    "With an " + IDEMPOTENCY_KEYS_HEADER + " header instead, each trade is executed once under its own key, as if sent alone")
+  @APIResponses(value = {
+    @APIResponse(responseCode = "200", description = "Batch executed, invalid trades are rejected individually"),
+    @APIResponse(responseCode = "400", description = "Invalid batch"),
+    @APIResponse(responseCode = "409", description = "A batch, or a trade, with the same idempotency key is being executed"),
+    @APIResponse(responseCode = "422", description = "The idempotency key was already used for another batch")
   })
-  public void executeTrade(@RequestBody(description = "Trade to execute") Trade trade) {
-    tradeService.executeTrade(trade);
+  @RunOnVirtualThread
+  public List<TradeResult> executeTrades(@Parameter(description = "Unique key of the batch, to safely retry it") @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                         @Parameter(description = "Comma-separated unique keys of the trades, in order, to safely retry each of them") @HeaderParam(IDEMPOTENCY_KEYS_HEADER) String tradeKeys,
+                                         @RequestBody(description = "Trades to execute") List<Trade> trades) {
+    if (trades == null) {
+      throw new BadRequestException("Missing trades");
+    }
+    checkBatchSize(trades.size());
+    return executeBatch(idempotencyKey, tradeKeys, trades);
+  }
+
+  @POST
+  @Path("/batch")
+  @Consumes(RestMediaType.APPLICATION_NDJSON)
+  @Operation(summary = "Execute a stream of currency trades", description = "Executes trades sent as newline-delimited JSON in one pass, and returns the result of each trade in order")
+  @APIResponses(value = {
+    @APIResponse(responseCode = "200", description = "Batch executed, invalid trades are rejected individually"),
+    @APIResponse(responseCode = "400", description = "Invalid batch")
+  })
+  @RunOnVirtualThread
+  public List<TradeResult> executeTradeStream(@Parameter(description = "Unique key of the batch, to safely retry it") @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                              @Parameter(description = "Comma-separated unique keys of the trades, in order, to safely retry each of them") @HeaderParam(IDEMPOTENCY_KEYS_HEADER) String tradeKeys,
+                                              @RequestBody(description = "Trades to execute, one JSON object per line") InputStream body) {
+    List<Trade> trades = new ArrayList<>();
+    try (MappingIterator<Trade> iterator = objectMapper.readerFor(Trade.class).readValues(body)) {
+      while (iterator.hasNextValue()) {
+        trades.add(iterator.nextValue());
+        checkBatchSize(trades.size());
+      }
+    } catch (IOException e) {
+      throw new BadRequestException("Invalid trade at line " + (trades.size() + 1) + ": " + e.getMessage(), e);
+    }
+    return executeBatch(idempotencyKey, tradeKeys, trades);
+  }
+
+  private List<TradeResult> executeBatch(String idempotencyKey, String tradeKeys, List<Trade> trades) {
+    if (tradeKeys != null) {
+      if (idempotencyKey != null) {
+        throw new BadRequestException("Either " + IDEMPOTENCY_KEY_HEADER + " or " + IDEMPOTENCY_KEYS_HEADER + " header, not both");
+      }
+      return executeTradesOnce(parseTradeKeys(tradeKeys, trades.size()), trades);
+    }
+    if (idempotencyKey == null) {
+      return tradeService.executeTrades(trades);
+    }
+    checkIdempotencyKey(idempotencyKey);
+
+    TradeService.BatchExecution execution = tradeService.executeTrades(idempotencyKey, trades);
+    return switch (execution.claim()) {
+      case NEW, DUPLICATE -> execution.results();
+      case IN_PROGRESS -> throw new ClientErrorException("Batch with the same " + IDEMPOTENCY_KEY_HEADER + " in progress", Response.Status.CONFLICT);
+      case MISMATCH -> throw new ClientErrorException(IDEMPOTENCY_KEY_HEADER + " already used for another batch", 422);
+    };
+  }
+
+  private List<TradeResult> executeTradesOnce(List<String> tradeKeys, List<Trade> trades) {
+    TradeService.BatchExecution execution = tradeService.executeTrades(tradeKeys, trades);
+    if (execution.claim() == IdempotencyKeys.Claim.IN_PROGRESS) {
+      throw new ClientErrorException("Trade with the same " + IDEMPOTENCY_KEY_HEADER + " in progress", Response.Status.CONFLICT);
+    }
+    return execution.results();
+  }
+
+  private static List<String> parseTradeKeys(String tradeKeys, int tradeCount) {
+    List<String> keys = new ArrayList<>(tradeCount);
+    for (String key : tradeKeys.split(",", -1)) {
+      key = key.trim();
+      checkIdempotencyKey(key);
+      keys.add(key);
+    }
+    if (keys.size() != tradeCount) {
+      throw new BadRequestException(IDEMPOTENCY_KEYS_HEADER + " header has " + keys.size() + " keys for " + tradeCount + " trades");
+    }
+    return keys;
+  }
+
+  private static void checkIdempotencyKey(String idempotencyKey) {
+    if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+      throw new BadRequestException("Invalid " + IDEMPOTENCY_KEY_HEADER + " header");
+    }
+  }
+
+  private static void checkBatchSize(int size) {
+    if (size > MAX_BATCH_SIZE) {
+      throw new BadRequestException("Batch larger than " + MAX_BATCH_SIZE + " trades");
+    }
+  }
+
+  @GET
+  @Path("/events")
+  @Produces(MediaType.SERVER_SENT_EVENTS)
+  @RestStreamElementType(MediaType.APPLICATION_JSON)
+  @Operation(summary = "Stream all trades", description = "Streams the trades of every user as Server-Sent Events, as they are executed")
+  public Multi<Trade> streamAllTrades() {
+    return tradeEvents.subscribe(null);
+  }
+
+  @GET
+  @Path("/events")
+  @Produces(RestMediaType.APPLICATION_NDJSON)
+  @RestStreamElementType(MediaType.APPLICATION_JSON)
+  @Operation(summary = "Stream all trades", description = "Streams the trades of every user as newline-delimited JSON, as they are executed")
+  public Multi<Trade> streamAllTradesAsJson() {
+    return tradeEvents.subscribe(null);
+  }
+
+  @GET
+  @Path("/{userId}/events")
+  @Produces(MediaType.SERVER_SENT_EVENTS)
+  @RestStreamElementType(MediaType.APPLICATION_JSON)
+  @Operation(summary = "Stream user trades", description = "Streams the trades of a specific user as Server-Sent Events, as they are executed")
+  public Multi<Trade> streamTrades(@Parameter(description = "User ID", required = true) @PathParam("userId") String userId) {
+    return tradeEvents.subscribe(userId);
+  }
+
+  @GET
+  @Path("/{userId}/events")
+  @Produces(RestMediaType.APPLICATION_NDJSON)
+  @RestStreamElementType(MediaType.APPLICATION_JSON)
+  @Operation(summary = "Stream user trades", description = "Streams the trades of a specific user as newline-delimited JSON, as they are executed")
+  public Multi<Trade> streamTradesAsJson(@Parameter(description = "User ID", required = true) @PathParam("userId") String userId) {
+    return tradeEvents.subscribe(userId);
   }
 
   @GET
   @Path("/{userId}")
-  @Operation(summary = "Get user trade history", description = "Retrieves all trades for a specific user")
+  @Operation(summary = "Get user trade history", description = "Retrieves the trades of a specific user, all of them or a page at a time. " +
+    "When more trades are available, the cursor of the next page is returned in the " + NEXT_CURSOR_HEADER + " header")
   @APIResponses(value = {
     @APIResponse(responseCode = "200", description = "Trade history retrieved successfully"),
+    @APIResponse(responseCode = "400", description = "Invalid page parameters"),
     @APIResponse(responseCode = "404", description = "User not found")
   })
-  public List<Trade> getAllTrades(@Parameter(description = "User ID", required = true) @PathParam("userId") String userId) {
-    return tradeService.getAllTrades(userId);
+  @NonBlocking
+  public Uni<RestResponse<List<Trade>>> getAllTrades(@Parameter(description = "User ID", required = true) @PathParam("userId") String userId,
+                                                     @Parameter(description = "Maximum number of trades") @QueryParam("limit") Integer limit,
+                                                     @Parameter(description = "Cursor of the page, from the " + NEXT_CURSOR_HEADER + " header") @QueryParam("cursor") Integer cursor,
+                                                     @Parameter(description = "Trades at or after this time", example = "2025-01-31T12:00:00") @QueryParam("from") LocalDateTime from,
+                                                     @Parameter(description = "Trades at or before this time", example = "2025-01-31T18:00:00") @QueryParam("to") LocalDateTime to,
+                                                     @Parameter(description = "Execution order, oldest (asc) or newest (desc) first") @QueryParam("order") @DefaultValue("asc") String order) {
+    if (limit != null && limit < 1) {
+      throw new BadRequestException("limit must be positive: " + limit);
+    }
+    if (cursor != null && cursor < 0) {
+      throw new BadRequestException("Invalid cursor: " + cursor);
+    }
+    if (!"asc".equals(order) && !"desc".equals(order)) {
+      throw new BadRequestException("order must be asc or desc: " + order);
+    }
+
+    int pageSize = limit == null ? Integer.MAX_VALUE : limit;
+    Uni<RestResponse<List<Trade>>> page = Uni.createFrom().item(() -> {
+      TradePage trades = tradeService.getTrades(userId, from, to, cursor, pageSize, "desc".equals(order));
+      return trades.nextCursor() == null
+        ? RestResponse.ok(trades.trades())
+        : RestResponse.ResponseBuilder.ok(trades.trades()).header(NEXT_CURSOR_HEADER, trades.nextCursor()).build();
+    });
+    // The response is serialized on the thread the page is read on
+    return pageSize <= EVENT_LOOP_PAGE_SIZE ? page : page.runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+  }
+
+  @GET
+  @Path("/{userId}/summary")
+  @Operation(summary = "Get user trade summary", description = "Retrieves the totals of the trades of a specific user, per target currency")
+  @APIResponses(value = {
+    @APIResponse(responseCode = "200", description = "Trade summary retrieved successfully")
+  })
+  @NonBlocking
+  public TradeSummary getSummary(@Parameter(description = "User ID", required = true) @PathParam("userId") String userId) {
+    return tradeService.getSummary(userId);
   }
 }
@@ -0,0 +1,25 @@
+package com.pluralsight.currencyexchange.trade;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Result of a trade of a batch")
+public record TradeResult(
+
+  @Schema(description = "Position of the trade in the batch", required = true)
+  int index,
+
+  @Schema(description = "Executed trade, when the trade is valid")
+  Trade trade,
+
+  @Schema(description = "Why the trade was rejected, when it is invalid")
+  String error
+) {
+
+  static TradeResult executed(int index, Trade trade) {
+    return new TradeResult(index, trade, null);
+  }
+
+  static TradeResult rejected(int index, String error) {
+    return new TradeResult(index, null, error);
+  }
+}
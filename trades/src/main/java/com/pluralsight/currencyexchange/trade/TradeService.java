@@ -1,24 +1,295 @@
 package com.pluralsight.currencyexchange.trade;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 @ApplicationScoped
 public class TradeService {
 
   private static final Logger LOG = Logger.getLogger(TradeResource.class);
 
-  private final Map<String, List<Trade>> tradeHistory = new HashMap<>();
+  private static final int USER_LOCKS = 256;
+
+  @ConfigProperty(name = "trades.store.compact", defaultValue = "true")
+  boolean compactStore;
+
+  private TradeStore tradeHistory;
+
+  @Inject
+  TradeJournal tradeJournal;
+
+  @Inject
+  IdempotencyKeys idempotencyKeys;
+
+  @Inject
+  TradeEvents tradeEvents;
+
+  @Inject
+  TradeMetrics tradeMetrics;
+
+  /**
+   * The trades of a user are journaled and stored under the same lock, so the history keeps the order of the journal,
+   * the order it is replayed in after a restart. Users share a fixed number of locks; the locks are not monitors, so
+   * virtual threads waiting for the journal release their carrier thread.
+   */
+  private final Lock[] userLocks = new Lock[USER_LOCKS];
+
+  {
+    for (int i = 0; i < USER_LOCKS; i++) {
+      userLocks[i] = new ReentrantLock();
+    }
+  }
+
+  @PostConstruct
+  void recoverTrades() {
+    tradeHistory = new TradeStore(compactStore);
+    tradeJournal.replay(tradeHistory::append);
+    tradeMetrics.bind(tradeHistory);
+  }
 
   public void executeTrade(Trade trade) {
+    executeAndStore(trade);
+  }
+
+  private Trade executeAndStore(Trade trade) {
     LOG.info("Execute trade: " + trade);
 
+    Trade executedTrade = execute(trade);
+
+    // Store trade in history, once it is durable
+    Lock userLock = userLocks[userLockIndex(executedTrade.userId())];
+    userLock.lock();
+    try {
+      tradeJournal.append(executedTrade);
+      tradeHistory.append(executedTrade);
+    } finally {
+      userLock.unlock();
+    }
+    tradeMetrics.recordExecuted(executedTrade);
+    tradeEvents.publish(executedTrade);
+    return executedTrade;
+  }
+
+  /**
+   * Executes the trade unless a trade with the same idempotency key was already executed.
+   * Returns how the key was claimed: the trade is only executed when the key is {@code NEW}.
+   */
+  public IdempotencyKeys.Claim executeTrade(String idempotencyKey, Trade trade) {
+    IdempotencyKeys.Claim claim = idempotencyKeys.claim(idempotencyKey, trade);
+    if (claim != IdempotencyKeys.Claim.NEW) {
+      LOG.info("Not executing trade with idempotency key " + idempotencyKey + " (" + claim + "): " + trade);
+      return claim;
+    }
+
+    Trade executedTrade;
+    try {
+      executedTrade = executeAndStore(trade);
+    } catch (RuntimeException e) {
+      // Let the client retry a trade that was not executed
+      idempotencyKeys.release(idempotencyKey);
+      throw e;
+    }
+    idempotencyKeys.complete(idempotencyKey, executedTrade);
+    return claim;
+  }
+
+  /**
+   * Results of a batch executed with an idempotency key, only executed when the key is {@code NEW}.
+   */
+  public record BatchExecution(IdempotencyKeys.Claim claim, List<TradeResult> results) {
+  }
+
+  /**
+   * Executes the batch unless a batch with the same idempotency key was already executed.
+   * A repeated batch gets the results of its first execution without being executed again.
+   */
+  @SuppressWarnings("unchecked")
+  public BatchExecution executeTrades(String idempotencyKey, List<Trade> trades) {
+    // A digest of the content identifies the batch, rather than keeping every trade of it with the key
+    IdempotencyKeys.Claimed claimed = idempotencyKeys.claimWithResult(idempotencyKey, digest(trades));
+    IdempotencyKeys.Claim claim = claimed.claim();
+    switch (claim) {
+      case NEW -> {
+        List<TradeResult> results;
+        try {
+          results = executeTrades(trades);
+        } catch (RuntimeException e) {
+          // Let the client retry a batch that was not executed
+          idempotencyKeys.release(idempotencyKey);
+          throw e;
+        }
+        idempotencyKeys.complete(idempotencyKey, results);
+        return new BatchExecution(claim, results);
+      }
+      case DUPLICATE -> {
+        LOG.info("Not executing batch of " + trades.size() + " trades with idempotency key " + idempotencyKey + " again");
+        return new BatchExecution(claim, (List<TradeResult>) claimed.result());
+      }
+      default -> {
+        LOG.info("Not executing batch with idempotency key " + idempotencyKey + " (" + claim + ")");
+        return new BatchExecution(claim, List.of());
+      }
+    }
+  }
+
+  /**
+   * Executes each trade of the batch under its own idempotency key, the same key as when the trade is sent alone:
+   * a trade already executed, alone or in another batch, gets the result of its first execution instead of being
+   * executed again, and a trade whose key was used for another trade is rejected. Nothing is executed, and the claim
+   * is {@code IN_PROGRESS}, when one of the trades is being executed by another call.
+   */
+  public BatchExecution executeTrades(List<String> tradeKeys, List<Trade> trades) {
+    TradeResult[] results = new TradeResult[trades.size()];
+    List<Integer> claimed = new ArrayList<>(trades.size());
+    Set<String> batchKeys = new HashSet<>();
+    for (int i = 0; i < trades.size(); i++) {
+      String key = tradeKeys.get(i);
+      if (!batchKeys.add(key)) {
+        results[i] = TradeResult.rejected(i, "Idempotency key repeated in the batch");
+        continue;
+      }
+      IdempotencyKeys.Claimed claim = idempotencyKeys.claimWithResult(key, trades.get(i));
+      switch (claim.claim()) {
+        case NEW -> claimed.add(i);
+        case DUPLICATE -> results[i] = TradeResult.executed(i, (Trade) claim.result());
+        case MISMATCH -> results[i] = TradeResult.rejected(i, "Idempotency key already used for another trade");
+        case IN_PROGRESS -> {
+          LOG.info("Not executing batch, trade with idempotency key " + key + " in progress");
+          release(tradeKeys, claimed);
+          return new BatchExecution(IdempotencyKeys.Claim.IN_PROGRESS, List.of());
+        }
+      }
+    }
+
+    List<TradeResult> executed;
+    try {
+      executed = executeTrades(claimed.stream().map(trades::get).toList());
+    } catch (RuntimeException e) {
+      // Let the client retry the trades that were not executed
+      release(tradeKeys, claimed);
+      throw e;
+    }
+    for (TradeResult result : executed) {
+      int i = claimed.get(result.index());
+      if (result.error() != null) {
+        idempotencyKeys.release(tradeKeys.get(i));
+        results[i] = TradeResult.rejected(i, result.error());
+      } else {
+        idempotencyKeys.complete(tradeKeys.get(i), result.trade());
+        results[i] = TradeResult.executed(i, result.trade());
+      }
+    }
+    if (claimed.size() < trades.size()) {
+      LOG.info("Not executing " + (trades.size() - claimed.size()) + " trades of the batch again");
+    }
+    return new BatchExecution(IdempotencyKeys.Claim.NEW, List.of(results));
+  }
+
+  private void release(List<String> tradeKeys, List<Integer> claimed) {
+    for (int i : claimed) {
+      idempotencyKeys.release(tradeKeys.get(i));
+    }
+  }
+
+  /**
+   * Executes a batch of trades in one pass: the valid trades are journaled with a single write and fsync,
+   * and stored taking each user lock once. Invalid trades are rejected without failing the batch.
+   */
+  public List<TradeResult> executeTrades(List<Trade> trades) {
+    LOG.info("Execute batch of " + trades.size() + " trades");
+
+    List<TradeResult> results = new ArrayList<>(trades.size());
+    List<Trade> executedTrades = new ArrayList<>(trades.size());
+    for (int i = 0; i < trades.size(); i++) {
+      String error = validate(trades.get(i));
+      if (error != null) {
+        results.add(TradeResult.rejected(i, error));
+      } else {
+        Trade executedTrade = execute(trades.get(i));
+        executedTrades.add(executedTrade);
+        results.add(TradeResult.executed(i, executedTrade));
+      }
+    }
+
+    // Taken in ascending order, so batches sharing users never wait for each other
+    int[] lockIndexes = executedTrades.stream().mapToInt(trade -> userLockIndex(trade.userId())).distinct().sorted().toArray();
+    for (int lockIndex : lockIndexes) {
+      userLocks[lockIndex].lock();
+    }
+    try {
+      tradeJournal.appendAll(executedTrades);
+      tradeHistory.appendAll(executedTrades);
+    } finally {
+      for (int i = lockIndexes.length - 1; i >= 0; i--) {
+        userLocks[lockIndexes[i]].unlock();
+      }
+    }
+    for (Trade executedTrade : executedTrades) {
+      tradeMetrics.recordExecuted(executedTrade);
+      tradeEvents.publish(executedTrade);
+    }
+
+    LOG.info("Executed " + executedTrades.size() + " trades, rejected " + (trades.size() - executedTrades.size()));
+    return results;
+  }
+
+  // SHA-256 of the trades, unlike a hash code two different batches never collide in practice
+  private static String digest(List<Trade> trades) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (Trade trade : trades) {
+        digest.update(String.valueOf(trade).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static int userLockIndex(String userId) {
+    return Math.floorMod(userId.hashCode(), USER_LOCKS);
+  }
+
+  /**
+   * Why the trade cannot be executed, null when it is valid.
+   */
+  static String validate(Trade trade) {
+    if (trade == null) {
+      return "Missing trade";
+    }
+    if (trade.userId() == null || trade.userId().isBlank()) {
+      return "Missing userId";
+    }
+    if (trade.usdAmount() == null) {
+      return "Missing usdAmount";
+    }
+    if (trade.toCurrency() == null || trade.toCurrency().isBlank()) {
+      return "Missing toCurrency";
+    }
+    if (trade.exchangeRate() == null) {
+      return "Missing exchangeRate";
+    }
+    return null;
+  }
+
+  private static Trade execute(Trade trade) {
     // Calculate converted amount
     BigDecimal convertedAmount = trade.usdAmount().multiply(trade.exchangeRate());
 
@@ -26,18 +297,39 @@ public class TradeService {
     String status = trade.exchangeRate().compareTo(BigDecimal.ZERO) == 0 ? "PENDING" : "COMPLETED";
 
     // Create new trade with converted amount and status
-    Trade executedTrade = new Trade(trade.userId(), trade.timestamp(), trade.usdAmount(), trade.toCurrency(), convertedAmount, trade.exchangeRate(), status);
-
-    // Store trade in history
-    tradeHistory.computeIfAbsent(trade.userId(), k -> new ArrayList<>()).add(executedTrade);
+    return new Trade(trade.userId(), trade.timestamp(), trade.usdAmount(), trade.toCurrency(), convertedAmount, trade.exchangeRate(), status);
   }
 
   public List<Trade> getAllTrades(String userId) {
     LOG.info("Getting trade history for user: " + userId);
 
-    List<Trade> trades = tradeHistory.getOrDefault(userId, new ArrayList<>());
+    List<Trade> trades = tradeHistory.trades(userId);
 
     LOG.info("Returning " + trades.size() + " trades for user: " + userId);
     return trades;
   }
+
+  /**
+   * Page of the trade history of a user, optionally restricted to a time range (inclusive).
+   * Served from the per-user index, so only the trades of the page are read.
+   */
+  public TradePage getTrades(String userId, LocalDateTime from, LocalDateTime to, Integer cursor, int limit, boolean descending) {
+    LOG.info("Getting trade page for user: " + userId + " from: " + from + " to: " + to + " cursor: " + cursor + " limit: " + limit);
+
+    long fromMillis = from == null ? Long.MIN_VALUE : TradeStore.toEpochMillis(from);
+    long toMillis = to == null ? Long.MAX_VALUE : TradeStore.toEpochMillis(to);
+    TradePage page = tradeHistory.page(userId, fromMillis, toMillis, cursor, limit, descending);
+
+    LOG.info("Returning " + page.trades().size() + " trades for user: " + userId);
+    return page;
+  }
+
+  /**
+   * Totals of the trades of a user per currency, maintained as trades are executed.
+   */
+  public TradeSummary getSummary(String userId) {
+    LOG.info("Getting trade summary for user: " + userId);
+
+    return tradeHistory.summary(userId);
+  }
 }
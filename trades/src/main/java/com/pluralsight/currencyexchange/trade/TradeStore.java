@@ -0,0 +1,217 @@
+package com.pluralsight.currencyexchange.trade;
+
+import com.pluralsight.currencyexchange.trade.TradeSummary.CurrencyTotals;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent store of the executed trades, as an append-only log per user.
+ * Appends for different users never contend with each other, and reads never lock.
+ * In compact mode, trades are stored column-wise in primitive arrays, and only materialized when read.
+ */
+final class TradeStore {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final ConcurrentMap<String, TradeLog> logs = new ConcurrentHashMap<>();
+  private final LongAdder tradeCount = new LongAdder();
+  private final boolean compact;
+
+  TradeStore() {
+    this(true);
+  }
+
+  TradeStore(boolean compact) {
+    this.compact = compact;
+  }
+
+  void append(Trade trade) {
+    logs.computeIfAbsent(trade.userId(), this::newLog).append(trade);
+    tradeCount.increment();
+  }
+
+  /**
+   * Appends the trades in order, taking the lock of each user log once.
+   */
+  void appendAll(List<Trade> trades) {
+    Map<String, List<Trade>> tradesByUser = new LinkedHashMap<>();
+    for (Trade trade : trades) {
+      tradesByUser.computeIfAbsent(trade.userId(), userId -> new ArrayList<>()).add(trade);
+    }
+    tradesByUser.forEach((userId, userTrades) -> logs.computeIfAbsent(userId, this::newLog).appendAll(userTrades));
+    tradeCount.add(trades.size());
+  }
+
+  /**
+   * Trades of the user in execution order, as an immutable snapshot.
+   */
+  List<Trade> trades(String userId) {
+    TradeLog log = logs.get(userId);
+    return log == null ? List.of() : log.snapshot();
+  }
+
+  /**
+   * Page of the trades of the user between two times (inclusive), starting at the cursor
+   * (a position in the log) and going forward or backward in execution order.
+   * Only the trades of the page are copied.
+   */
+  TradePage page(String userId, long fromMillis, long toMillis, Integer cursor, int limit, boolean descending) {
+    TradeLog log = logs.get(userId);
+    return log == null ? new TradePage(List.of(), null) : log.page(fromMillis, toMillis, cursor, limit, descending);
+  }
+
+  /**
+   * Running totals of the trades of the user, per target currency.
+   */
+  TradeSummary summary(String userId) {
+    TradeLog log = logs.get(userId);
+    return new TradeSummary(userId, log == null ? List.of() : List.copyOf(log.totals.values()));
+  }
+
+  long tradeCount() {
+    return tradeCount.sum();
+  }
+
+  int userCount() {
+    return logs.size();
+  }
+
+  int size(String userId) {
+    TradeLog log = logs.get(userId);
+    return log == null ? 0 : log.size;
+  }
+
+  private TradeLog newLog(String userId) {
+    return new TradeLog(userId, compact ? new CompactTradeColumns(INITIAL_CAPACITY) : new ObjectTradeColumns(INITIAL_CAPACITY));
+  }
+
+  static long toEpochMillis(LocalDateTime timestamp) {
+    return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+  }
+
+  /**
+   * Append-only log of the trades of one user. Appends are serialized on the log,
+   * readers take a lock-free snapshot: the volatile writes of the columns, the index and the size
+   * publish every trade below {@code size} to any reader that read {@code size} first.
+   * <p>
+   * Totals per currency are maintained at write time and published as an immutable map.
+   * <p>
+   * Trades are indexed by time in execution order: a trade timestamped before the previous one
+   * (or without timestamp) is indexed at the time of the previous one, so the index stays sorted.
+   */
+  static final class TradeLog {
+
+    private final String userId;
+    private volatile TradeColumns columns;
+    private volatile long[] indexMillis;
+    private volatile int size;
+    private volatile SortedMap<String, CurrencyTotals> totals = Collections.emptySortedMap();
+
+    TradeLog(String userId, TradeColumns columns) {
+      this.userId = userId;
+      this.columns = columns;
+      this.indexMillis = new long[columns.capacity()];
+    }
+
+    synchronized void append(Trade trade) {
+      appendAll(List.of(trade));
+    }
+
+    synchronized void appendAll(List<Trade> newTrades) {
+      int count = size;
+      TradeColumns currentColumns = columns;
+      long[] currentIndex = indexMillis;
+      if (count + newTrades.size() > currentColumns.capacity()) {
+        int capacity = Math.max(currentColumns.capacity() * 2, count + newTrades.size());
+        currentColumns = currentColumns.grow(capacity);
+        currentIndex = Arrays.copyOf(currentIndex, capacity);
+        columns = currentColumns;
+        indexMillis = currentIndex;
+      }
+      long previousMillis = count == 0 ? Long.MIN_VALUE : currentIndex[count - 1];
+      SortedMap<String, CurrencyTotals> newTotals = new TreeMap<>(totals);
+      for (Trade trade : newTrades) {
+        long millis = trade.timestamp() == null ? previousMillis : Math.max(previousMillis, toEpochMillis(trade.timestamp()));
+        currentColumns.set(count, trade);
+        currentIndex[count] = millis;
+        previousMillis = millis;
+        count++;
+        if (trade.toCurrency() != null) {
+          newTotals.put(trade.toCurrency(), newTotals.getOrDefault(trade.toCurrency(), CurrencyTotals.NONE).add(trade));
+        }
+      }
+      // Publishes the whole batch at once
+      size = count;
+      totals = Collections.unmodifiableSortedMap(newTotals);
+    }
+
+    List<Trade> snapshot() {
+      int count = size;
+      // Read after the size, so the columns hold at least count trades
+      return materialize(columns, 0, count, false);
+    }
+
+    TradePage page(long fromMillis, long toMillis, Integer cursor, int limit, boolean descending) {
+      int count = size;
+      TradeColumns currentColumns = columns;
+      long[] currentIndex = indexMillis;
+
+      int first = firstIndexAfter(currentIndex, count, fromMillis, false);
+      int last = firstIndexAfter(currentIndex, count, toMillis, true);
+      int start;
+      int end;
+      Integer nextCursor;
+      if (descending) {
+        end = cursor == null ? last : Math.min(last, cursor);
+        start = Math.max(first, end - limit);
+        nextCursor = start > first ? start : null;
+      } else {
+        start = cursor == null ? first : Math.max(first, cursor);
+        end = (int) Math.min(last, (long) start + limit);
+        nextCursor = end < last ? end : null;
+      }
+      if (start >= end) {
+        return new TradePage(List.of(), null);
+      }
+
+      return new TradePage(materialize(currentColumns, start, end, descending), nextCursor);
+    }
+
+    private List<Trade> materialize(TradeColumns currentColumns, int start, int end, boolean descending) {
+      Trade[] trades = new Trade[end - start];
+      for (int i = 0; i < trades.length; i++) {
+        trades[i] = currentColumns.get(descending ? end - 1 - i : start + i, userId);
+      }
+      return Collections.unmodifiableList(Arrays.asList(trades));
+    }
+
+    /**
+     * Position of the first trade indexed after the given time (or at it, unless inclusive).
+     */
+    private static int firstIndexAfter(long[] index, int count, long millis, boolean inclusive) {
+      int low = 0;
+      int high = count;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (index[middle] < millis || (inclusive && index[middle] == millis)) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+}
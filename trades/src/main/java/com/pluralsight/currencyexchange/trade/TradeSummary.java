@@ -0,0 +1,50 @@
+package com.pluralsight.currencyexchange.trade;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+@Schema(description = "Totals of the trades of a user, per target currency")
+public record TradeSummary(
+
+  @Schema(description = "User ID", required = true)
+  String userId,
+
+  @Schema(description = "Totals per target currency, sorted by currency code", required = true)
+  List<CurrencyTotals> currencies
+) {
+
+  @Schema(description = "Totals of the trades to a currency")
+  public record CurrencyTotals(
+
+    @Schema(description = "Target currency code", required = true, examples = "EUR")
+    String currency,
+
+    @Schema(description = "Total amount in USD exchanged", required = true)
+    BigDecimal usdAmount,
+
+    @Schema(description = "Total converted amount in the target currency", required = true)
+    BigDecimal convertedAmount,
+
+    @Schema(description = "Number of trades", required = true)
+    long tradeCount,
+
+    @Schema(description = "Average exchange rate, weighted by the USD amounts")
+    BigDecimal averageRate
+  ) {
+
+    static final CurrencyTotals NONE = new CurrencyTotals(null, BigDecimal.ZERO, BigDecimal.ZERO, 0, null);
+
+    /**
+     * Running totals with one more trade.
+     */
+    CurrencyTotals add(Trade trade) {
+      BigDecimal usdTotal = usdAmount.add(trade.usdAmount() == null ? BigDecimal.ZERO : trade.usdAmount());
+      BigDecimal convertedTotal = convertedAmount.add(trade.convertedAmount() == null ? BigDecimal.ZERO : trade.convertedAmount());
+      BigDecimal rate = usdTotal.signum() == 0 ? null : convertedTotal.divide(usdTotal, 6, RoundingMode.HALF_UP);
+      return new CurrencyTotals(trade.toCurrency(), usdTotal, convertedTotal, tradeCount + 1, rate);
+    }
+  }
+}
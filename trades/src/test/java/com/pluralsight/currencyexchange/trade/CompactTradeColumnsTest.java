@@ -0,0 +1,73 @@
+package com.pluralsight.currencyexchange.trade;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+class CompactTradeColumnsTest {
+
+  @Test
+  void shouldMaterializeTradesExactly() {
+    Trade trade = new Trade("user1", LocalDateTime.of(2025, 1, 31, 12, 30, 15, 123_000_000), new BigDecimal("100.50"), "EUR",
+      new BigDecimal("92.629850"), new BigDecimal("0.9217"), "COMPLETED");
+    Trade tradeWithNulls = new Trade("user1", null, new BigDecimal("-1E+3"), null, null, BigDecimal.ZERO, null);
+    Trade pastTrade = new Trade("user1", LocalDateTime.of(1901, 1, 1, 0, 0), BigDecimal.ONE, "JPY", BigDecimal.TEN, BigDecimal.TEN, "PENDING");
+
+    TradeColumns columns = new CompactTradeColumns(2);
+    columns.set(0, trade);
+    columns.set(1, tradeWithNulls);
+    columns = columns.grow(3);
+    columns.set(2, pastTrade);
+
+    assertEquals(trade, columns.get(0, "user1"));
+    assertEquals(tradeWithNulls, columns.get(1, "user1"));
+    assertEquals(pastTrade, columns.get(2, "user1"));
+  }
+
+  @Test
+  void shouldKeepTimestampsToTheMillisecond() {
+    Trade trade = new Trade("user1", LocalDateTime.of(2025, 1, 31, 12, 30, 15, 123_456_789), BigDecimal.ONE, "EUR",
+      BigDecimal.ONE, BigDecimal.ONE, "COMPLETED");
+
+    TradeColumns columns = new CompactTradeColumns(1);
+    columns.set(0, trade);
+
+    assertEquals(LocalDateTime.of(2025, 1, 31, 12, 30, 15, 123_000_000), columns.get(0, "user1").timestamp());
+  }
+
+  @Test
+  void shouldKeepTradesBeyondColumnsAsObjects() {
+    Trade hugeAmount = new Trade("user1", LocalDateTime.of(2025, 1, 31, 12, 0), new BigDecimal("123456789012345678901234567890.12"), "EUR",
+      BigDecimal.ONE, BigDecimal.ONE, "COMPLETED");
+    Trade farFuture = new Trade("user1", LocalDateTime.MAX, BigDecimal.ONE, "EUR", BigDecimal.ONE, BigDecimal.ONE, "COMPLETED");
+    Trade tinyRate = new Trade("user1", null, BigDecimal.ONE, "EUR", BigDecimal.ONE, new BigDecimal("1E-200"), "COMPLETED");
+
+    TradeColumns columns = new CompactTradeColumns(3);
+    columns.set(0, hugeAmount);
+    columns.set(1, farFuture);
+    columns.set(2, tinyRate);
+    columns = columns.grow(4);
+
+    assertEquals(hugeAmount, columns.get(0, "user1"));
+    assertEquals(farFuture, columns.get(1, "user1"));
+    assertEquals(tinyRate, columns.get(2, "user1"));
+  }
+
+  @Test
+  void shouldMatchObjectLayout() {
+    TradeStore compact = new TradeStore(true);
+    TradeStore objects = new TradeStore(false);
+    LocalDateTime start = LocalDateTime.of(2025, 1, 31, 12, 0);
+    for (int i = 0; i < 1_000; i++) {
+      Trade trade = new Trade("user1", start.plusSeconds(i), BigDecimal.valueOf(i, 2), i % 2 == 0 ? "EUR" : "GBP",
+        BigDecimal.valueOf(i * 9L, 3), new BigDecimal("0.9"), "COMPLETED");
+      compact.append(trade);
+      objects.append(trade);
+    }
+
+    assertEquals(objects.trades("user1"), compact.trades("user1"));
+    assertEquals(objects.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, 500, 20, true), compact.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, 500, 20, true));
+  }
+}
@@ -0,0 +1,85 @@
+package com.pluralsight.currencyexchange.trade;
+
+import com.pluralsight.currencyexchange.trade.IdempotencyKeys.Claim;
+import com.pluralsight.currencyexchange.trade.IdempotencyKeys.Claimed;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+class IdempotencyKeysTest {
+
+  private final AtomicLong nanoTime = new AtomicLong();
+
+  @Test
+  void shouldReportRepeatedRequests() {
+    IdempotencyKeys keys = new IdempotencyKeys(1_000, Duration.ofMinutes(10), nanoTime::get);
+
+    assertEquals(Claim.NEW, keys.claim("key1", "trade1"));
+    assertEquals(Claim.IN_PROGRESS, keys.claim("key1", "trade1"));
+    keys.complete("key1", "result1");
+    assertEquals(Claim.DUPLICATE, keys.claim("key1", "trade1"));
+    assertEquals(Claim.MISMATCH, keys.claim("key1", "trade2"));
+  }
+
+  @Test
+  void shouldReturnResultOfDuplicates() {
+    IdempotencyKeys keys = new IdempotencyKeys(1_000, Duration.ofMinutes(10), nanoTime::get);
+
+    assertEquals(new Claimed(Claim.NEW, null), keys.claimWithResult("key1", "trade1"));
+    keys.complete("key1", "result1");
+    assertEquals(new Claimed(Claim.DUPLICATE, "result1"), keys.claimWithResult("key1", "trade1"));
+    assertEquals(new Claimed(Claim.MISMATCH, null), keys.claimWithResult("key1", "trade2"));
+  }
+
+  @Test
+  void shouldForgetReleasedKeys() {
+    IdempotencyKeys keys = new IdempotencyKeys(1_000, Duration.ofMinutes(10), nanoTime::get);
+
+    assertEquals(Claim.NEW, keys.claim("key1", "trade1"));
+    keys.release("key1");
+    assertEquals(Claim.NEW, keys.claim("key1", "trade1"));
+  }
+
+  @Test
+  void shouldEvictExpiredKeys() {
+    IdempotencyKeys keys = new IdempotencyKeys(1_000, Duration.ofMinutes(10), nanoTime::get);
+    keys.claim("key1", "trade1");
+    keys.complete("key1", "result1");
+
+    nanoTime.addAndGet(Duration.ofMinutes(9).toNanos());
+    assertEquals(Claim.DUPLICATE, keys.claim("key1", "trade1"));
+    nanoTime.addAndGet(Duration.ofMinutes(2).toNanos());
+    assertEquals(Claim.NEW, keys.claim("key1", "trade1"));
+  }
+
+  @Test
+  void shouldStayWithinMaxKeys() {
+    // One key per segment
+    IdempotencyKeys keys = new IdempotencyKeys(64, Duration.ofHours(1), nanoTime::get);
+    for (int i = 0; i < 1_000_000; i++) {
+      keys.claim("key" + i, "trade" + i);
+      keys.complete("key" + i, "result" + i);
+    }
+
+    assertEquals(true, keys.size() <= 64);
+    // The most recent keys are remembered, the oldest ones are evicted
+    assertEquals(Claim.DUPLICATE, keys.claim("key999999", "trade999999"));
+    assertEquals(Claim.NEW, keys.claim("key0", "trade0"));
+  }
+
+  @Test
+  void shouldNotEvictKeysInProgress() {
+    // One key per segment, the keys of a segment are found by their hash
+    IdempotencyKeys keys = new IdempotencyKeys(64, Duration.ofHours(1), nanoTime::get);
+    assertEquals(Claim.NEW, keys.claim("inProgress", "trade"));
+    for (int i = 0; i < 10_000; i++) {
+      keys.claim("key" + i, "trade" + i);
+      keys.complete("key" + i, "result" + i);
+    }
+
+    assertEquals(Claim.IN_PROGRESS, keys.claim("inProgress", "trade"));
+    assertEquals(true, keys.size() <= 65);
+  }
+}
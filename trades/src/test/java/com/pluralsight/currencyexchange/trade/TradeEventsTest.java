@@ -0,0 +1,62 @@
+package com.pluralsight.currencyexchange.trade;
+
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+class TradeEventsTest {
+
+  private final TradeEvents tradeEvents = new TradeEvents(4);
+
+  @Test
+  void shouldStreamTradesPerUserAndForAllUsers() {
+    AssertSubscriber<Trade> user1 = tradeEvents.subscribe("user1").subscribe().withSubscriber(AssertSubscriber.create(10));
+    AssertSubscriber<Trade> allUsers = tradeEvents.subscribe(null).subscribe().withSubscriber(AssertSubscriber.create(10));
+
+    Trade trade1 = trade("user1", 1);
+    Trade trade2 = trade("user2", 2);
+    tradeEvents.publish(trade1);
+    tradeEvents.publish(trade2);
+
+    assertEquals(List.of(trade1), user1.getItems());
+    assertEquals(List.of(trade1, trade2), allUsers.getItems());
+  }
+
+  @Test
+  void shouldDisconnectSlowSubscriberWithoutBlockingOthers() {
+    AssertSubscriber<Trade> slow = tradeEvents.subscribe("user1").subscribe().withSubscriber(AssertSubscriber.create(0));
+    AssertSubscriber<Trade> fast = tradeEvents.subscribe("user1").subscribe().withSubscriber(AssertSubscriber.create(Long.MAX_VALUE));
+
+    for (int i = 0; i < 100; i++) {
+      tradeEvents.publish(trade("user1", i));
+    }
+
+    slow.assertFailedWith(BackPressureFailure.class);
+    assertEquals(100, fast.getItems().size());
+    assertEquals(1, tradeEvents.subscriberCount("user1"));
+  }
+
+  @Test
+  void shouldReleaseChannelOfLastSubscriber() {
+    AssertSubscriber<Trade> first = tradeEvents.subscribe("user1").subscribe().withSubscriber(AssertSubscriber.create(10));
+    AssertSubscriber<Trade> second = tradeEvents.subscribe("user1").subscribe().withSubscriber(AssertSubscriber.create(10));
+    assertEquals(2, tradeEvents.subscriberCount("user1"));
+
+    first.cancel();
+    assertEquals(1, tradeEvents.subscriberCount("user1"));
+    second.cancel();
+    assertEquals(0, tradeEvents.subscriberCount("user1"));
+
+    // Nobody listening anymore
+    tradeEvents.publish(trade("user1", 1));
+    assertEquals(List.of(), second.getItems());
+  }
+
+  private static Trade trade(String userId, int amount) {
+    return new Trade(userId, BigDecimal.valueOf(amount), "EUR", BigDecimal.ONE);
+  }
+}
@@ -0,0 +1,142 @@
+package com.pluralsight.currencyexchange.trade;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class TradeJournalTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void shouldReplayJournaledTrades() {
+    Path path = directory.resolve("trades.journal");
+    Trade trade = new Trade("user1", LocalDateTime.of(2024, 1, 2, 3, 4, 5), new BigDecimal("100.50"), "EUR",
+      new BigDecimal("92.4600"), new BigDecimal("0.92"), "COMPLETED");
+    Trade tradeWithNulls = new Trade("user2", null, BigDecimal.TEN, "JPY", null, BigDecimal.ZERO, "PENDING");
+
+    TradeJournal journal = new TradeJournal(path);
+    journal.replay(replayed -> { });
+    journal.append(trade);
+    journal.append(tradeWithNulls);
+    journal.close();
+
+    assertEquals(List.of(trade, tradeWithNulls), replay(path));
+  }
+
+  @Test
+  void shouldReplayBatchesInOrder() {
+    Path path = directory.resolve("trades.journal");
+    TradeJournal journal = new TradeJournal(path);
+    journal.replay(replayed -> { });
+    List<Trade> batch = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      batch.add(new Trade("user" + (i % 3), BigDecimal.valueOf(i), "EUR", BigDecimal.ONE));
+    }
+    journal.appendAll(batch);
+    journal.append(new Trade("user1", BigDecimal.valueOf(1_000), "EUR", BigDecimal.ONE));
+    journal.close();
+
+    List<Trade> trades = replay(path);
+    assertEquals(1_001, trades.size());
+    assertEquals(batch, trades.subList(0, 1_000));
+  }
+
+  @Test
+  void shouldNotLoseTradesOfConcurrentWriters() throws Exception {
+    Path path = directory.resolve("trades.journal");
+    TradeJournal journal = new TradeJournal(path);
+    journal.replay(replayed -> { });
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> writers = new ArrayList<>();
+    for (int writer = 0; writer < 8; writer++) {
+      int writerId = writer;
+      writers.add(executor.submit(() -> {
+        for (int i = 0; i < 250; i++) {
+          journal.append(new Trade("user" + writerId, BigDecimal.valueOf(writerId * 250 + i), "EUR", BigDecimal.ONE));
+        }
+      }));
+    }
+    for (Future<?> writer : writers) {
+      writer.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+    journal.close();
+
+    Set<BigDecimal> amounts = new HashSet<>();
+    replay(path).forEach(trade -> amounts.add(trade.usdAmount()));
+    assertEquals(2_000, amounts.size());
+  }
+
+  @Test
+  void shouldTruncateTornRecordAndKeepAppending() throws IOException {
+    Path path = directory.resolve("trades.journal");
+    TradeJournal journal = new TradeJournal(path);
+    journal.replay(replayed -> { });
+    journal.append(new Trade("user1", BigDecimal.ONE, "EUR", BigDecimal.ONE));
+    journal.append(new Trade("user1", BigDecimal.TWO, "EUR", BigDecimal.ONE));
+    journal.close();
+
+    // Simulate a crash in the middle of the last record
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    journal = new TradeJournal(path);
+    List<Trade> trades = new ArrayList<>();
+    journal.replay(trades::add);
+    assertEquals(1, trades.size());
+    assertEquals(BigDecimal.ONE, trades.get(0).usdAmount());
+
+    journal.append(new Trade("user1", BigDecimal.TEN, "EUR", BigDecimal.ONE));
+    journal.close();
+    assertEquals(List.of(BigDecimal.ONE, BigDecimal.TEN), replay(path).stream().map(Trade::usdAmount).toList());
+  }
+
+  @Test
+  void shouldReplayAcrossWindows() {
+    Path path = directory.resolve("trades.journal");
+    TradeJournal journal = new TradeJournal(path);
+    journal.replay(replayed -> { });
+    List<Trade> batch = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      batch.add(new Trade("user" + i, BigDecimal.valueOf(i), "EUR", BigDecimal.ONE));
+    }
+    journal.appendAll(batch);
+    journal.close();
+
+    // Windows smaller than a record, then windows ending in the middle of records
+    for (long windowSize : new long[] {1, 100, 1_000}) {
+      TradeJournal windowed = new TradeJournal(path, windowSize);
+      List<Trade> trades = new ArrayList<>();
+      windowed.replay(trades::add);
+      windowed.close();
+      assertEquals(batch, trades);
+    }
+  }
+
+  private static List<Trade> replay(Path path) {
+    TradeJournal journal = new TradeJournal(path);
+    List<Trade> trades = new ArrayList<>();
+    journal.replay(trades::add);
+    journal.close();
+    return trades;
+  }
+}
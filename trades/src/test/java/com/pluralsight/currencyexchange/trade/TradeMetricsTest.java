@@ -0,0 +1,51 @@
+package com.pluralsight.currencyexchange.trade;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+class TradeMetricsTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final TradeMetrics tradeMetrics = new TradeMetrics(meterRegistry);
+  private final TradeStore tradeStore = new TradeStore();
+
+  @Test
+  void shouldCountStoredAndExecutedTrades() {
+    tradeStore.append(trade("user1", "EUR"));
+    tradeMetrics.bind(tradeStore);
+    assertNull(tradeMetrics.lastTradeTime());
+
+    List<Trade> trades = List.of(trade("user1", "EUR"), trade("user2", "GBP"), trade("user2", "EUR"));
+    tradeStore.appendAll(trades);
+    trades.forEach(tradeMetrics::recordExecuted);
+
+    assertEquals(4, tradeMetrics.storedTrades());
+    assertEquals(3, tradeMetrics.executedTrades());
+    assertEquals(2, tradeMetrics.users());
+    assertNotNull(tradeMetrics.lastTradeTime());
+    assertEquals(4, meterRegistry.get("mymetric_trades_stored").gauge().value());
+    assertEquals(2, meterRegistry.get("mymetric_trades_users").gauge().value());
+    assertEquals(2, meterRegistry.get("mymetric_trades_executed").tag("currency", "EUR").counter().count());
+    assertEquals(1, meterRegistry.get("mymetric_trades_executed").tag("currency", "GBP").counter().count());
+  }
+
+  @Test
+  void shouldBoundCurrencyTags() {
+    for (int i = 0; i < 100; i++) {
+      tradeMetrics.recordExecuted(trade("user1", "C" + i));
+    }
+
+    assertEquals(33, meterRegistry.get("mymetric_trades_executed").counters().size());
+    assertEquals(68, meterRegistry.get("mymetric_trades_executed").tag("currency", "other").counter().count());
+  }
+
+  private static Trade trade(String userId, String currency) {
+    return new Trade(userId, BigDecimal.ONE, currency, BigDecimal.ONE);
+  }
+}
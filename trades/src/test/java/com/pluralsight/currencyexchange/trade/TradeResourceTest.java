@@ -5,9 +5,12 @@ import static io.restassured.RestAssured.given;
 import io.restassured.http.ContentType;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 
 @QuarkusTest
 class TradeResourceTest {
@@ -40,4 +43,317 @@ class TradeResourceTest {
       .body("[0].status", is("COMPLETED"))
       .body("[0].timestamp", is(org.hamcrest.Matchers.notNullValue()));
   }
+
+  @Test
+  void shouldRejectTradeWithoutUser() {
+    given()
+      .contentType(ContentType.JSON)
+      .body("{\"usdAmount\": 100, \"toCurrency\": \"EUR\", \"exchangeRate\": 0.92}")
+      .when()
+      .post("/api/trades")
+      .then()
+      .statusCode(400);
+  }
+
+  @Test
+  void shouldPageTrades() {
+    for (int i = 1; i <= 5; i++) {
+      Trade trade = new Trade("pagedUser", BigDecimal.valueOf(i), "GBP", BigDecimal.valueOf(0.8));
+      given()
+        .contentType(ContentType.JSON)
+        .body(trade)
+        .when()
+        .post("/api/trades")
+        .then()
+        .statusCode(204);
+    }
+
+    // Newest trades first, two at a time
+    String cursor = given()
+      .when()
+      .get("/api/trades/pagedUser?limit=2&order=desc")
+      .then()
+      .statusCode(200)
+      .body("size()", is(2))
+      .body("[0].usdAmount", is(5))
+      .body("[1].usdAmount", is(4))
+      .header("X-Next-Cursor", notNullValue())
+      .extract().header("X-Next-Cursor");
+
+    given()
+      .when()
+      .get("/api/trades/pagedUser?limit=2&order=desc&cursor=" + cursor)
+      .then()
+      .statusCode(200)
+      .body("size()", is(2))
+      .body("[0].usdAmount", is(3))
+      .body("[1].usdAmount", is(2));
+
+    given()
+      .when()
+      .get("/api/trades/pagedUser?limit=10&from=2000-01-01T00:00:00&to=2100-01-01T00:00:00")
+      .then()
+      .statusCode(200)
+      .body("size()", is(5))
+      .header("X-Next-Cursor", nullValue());
+
+    given()
+      .when()
+      .get("/api/trades/pagedUser?limit=0")
+      .then()
+      .statusCode(400);
+  }
+
+  @Test
+  void shouldReturnWholeLargeHistoryWithoutLimit() {
+    StringBuilder batch = new StringBuilder();
+    for (int i = 0; i <= TradeResource.EVENT_LOOP_PAGE_SIZE; i++) {
+      batch.append("{\"userId\": \"largeHistoryUser\", \"usdAmount\": ").append(i).append(", \"toCurrency\": \"EUR\", \"exchangeRate\": 0.9}\n");
+    }
+    given()
+      .contentType("application/x-ndjson")
+      .body(batch.toString().getBytes(StandardCharsets.UTF_8))
+      .when()
+      .post("/api/trades/batch")
+      .then()
+      .statusCode(200);
+
+    given()
+      .when()
+      .get("/api/trades/largeHistoryUser")
+      .then()
+      .statusCode(200)
+      .body("size()", is(TradeResource.EVENT_LOOP_PAGE_SIZE + 1))
+      .header("X-Next-Cursor", nullValue())
+      .body("[" + TradeResource.EVENT_LOOP_PAGE_SIZE + "].usdAmount", is(TradeResource.EVENT_LOOP_PAGE_SIZE));
+
+    given()
+      .when()
+      .get("/api/trades/largeHistoryUser?limit=2&order=desc")
+      .then()
+      .statusCode(200)
+      .body("size()", is(2))
+      .header("X-Next-Cursor", notNullValue());
+  }
+
+  @Test
+  void shouldExecuteBatchOfTrades() {
+    given()
+      .contentType(ContentType.JSON)
+      .body("""
+        [
+          {"userId": "batchUser", "usdAmount": 100, "toCurrency": "EUR", "exchangeRate": 0.9},
+          {"userId": "batchUser", "usdAmount": 100, "exchangeRate": 0.9},
+          {"userId": "batchUser", "usdAmount": 200, "toCurrency": "GBP", "exchangeRate": 0.8}
+        ]""")
+      .when()
+      .post("/api/trades/batch")
+      .then()
+      .statusCode(200)
+      .body("size()", is(3))
+      .body("[0].index", is(0))
+      .body("[0].trade.convertedAmount", is(90.0f))
+      .body("[0].trade.status", is("COMPLETED"))
+      .body("[1].index", is(1))
+      .body("[1].error", is("Missing toCurrency"))
+      .body("[1].trade", nullValue())
+      .body("[2].trade.convertedAmount", is(160.0f));
+
+    given()
+      .when()
+      .get("/api/trades/batchUser")
+      .then()
+      .statusCode(200)
+      .body("size()", is(2))
+      .body("[1].toCurrency", is("GBP"));
+  }
+
+  @Test
+  void shouldExecuteStreamOfTrades() {
+    given()
+      .contentType("application/x-ndjson")
+      .body("""
+        {"userId": "streamUser", "usdAmount": 10, "toCurrency": "JPY", "exchangeRate": 150}
+        {"userId": "streamUser", "usdAmount": 20, "toCurrency": "JPY", "exchangeRate": 0}
+        """.getBytes(StandardCharsets.UTF_8))
+      .when()
+      .post("/api/trades/batch")
+      .then()
+      .statusCode(200)
+      .body("size()", is(2))
+      .body("[0].trade.status", is("COMPLETED"))
+      .body("[1].trade.status", is("PENDING"));
+
+    given()
+      .contentType("application/x-ndjson")
+      .body("{\"userId\": \"streamUser\", \"usdAmount\": 10}\nnot json\n".getBytes(StandardCharsets.UTF_8))
+      .when()
+      .post("/api/trades/batch")
+      .then()
+      .statusCode(400);
+  }
+
+  @Test
+  void shouldNotExecuteRetriedTradeTwice() {
+    Trade trade = new Trade("idempotentUser", BigDecimal.valueOf(100), "EUR", BigDecimal.valueOf(0.92));
+
+    for (int i = 0; i < 3; i++) {
+      given()
+        .contentType(ContentType.JSON)
+        .header("Idempotency-Key", "trade-1")
+        .body(trade)
+        .when()
+        .post("/api/trades")
+        .then()
+        .statusCode(204);
+    }
+
+    given()
+      .contentType(ContentType.JSON)
+      .header("Idempotency-Key", "trade-1")
+      .body(new Trade("idempotentUser", BigDecimal.valueOf(200), "EUR", BigDecimal.valueOf(0.92)))
+      .when()
+      .post("/api/trades")
+      .then()
+      .statusCode(422);
+
+    given()
+      .when()
+      .get("/api/trades/idempotentUser")
+      .then()
+      .statusCode(200)
+      .body("size()", is(1));
+  }
+
+  @Test
+  void shouldNotExecuteRetriedBatchTwice() {
+    String batch = """
+      [
+        {"userId": "idempotentBatchUser", "timestamp": "2025-01-31T12:00:00", "usdAmount": 100, "toCurrency": "EUR", "exchangeRate": 0.9},
+        {"userId": "idempotentBatchUser", "timestamp": "2025-01-31T12:00:01", "usdAmount": 200, "toCurrency": "GBP", "exchangeRate": 0.8}
+      ]""";
+    for (int i = 0; i < 2; i++) {
+      given()
+        .contentType(ContentType.JSON)
+        .header("Idempotency-Key", "batch-1")
+        .body(batch)
+        .when()
+        .post("/api/trades/batch")
+        .then()
+        .statusCode(200)
+        .body("size()", is(2))
+        .body("[1].trade.convertedAmount", is(160.0f));
+    }
+
+    given()
+      .contentType(ContentType.JSON)
+      .header("Idempotency-Key", "batch-1")
+      .body("[]")
+      .when()
+      .post("/api/trades/batch")
+      .then()
+      .statusCode(422);
+
+    given()
+      .when()
+      .get("/api/trades/idempotentBatchUser")
+      .then()
+      .statusCode(200)
+      .body("size()", is(2));
+  }
+
+  @Test
+  void shouldNotExecuteTradeOfBatchAlreadySentAlone() {
+    given()
+      .contentType(ContentType.JSON)
+      .header("Idempotency-Key", "trade-alone")
+      .body(new Trade("perTradeKeyUser", null, BigDecimal.valueOf(100), "EUR", null, BigDecimal.valueOf(0.9), null))
+      .when()
+      .post("/api/trades")
+      .then()
+      .statusCode(204);
+
+    // The same trade replayed in a batch under its own key, next to a new trade
+    String batch = """
+      [
+        {"userId": "perTradeKeyUser", "usdAmount": 100, "toCurrency": "EUR", "exchangeRate": 0.9},
+        {"userId": "perTradeKeyUser", "usdAmount": 200, "toCurrency": "GBP", "exchangeRate": 0.8}
+      ]""";
+    for (int i = 0; i < 2; i++) {
+      given()
+        .contentType(ContentType.JSON)
+        .header("Idempotency-Keys", "trade-alone, trade-batched")
+        .body(batch)
+        .when()
+        .post("/api/trades/batch")
+        .then()
+        .statusCode(200)
+        .body("size()", is(2))
+        .body("[0].trade.usdAmount", is(100))
+        .body("[1].trade.convertedAmount", is(160.0f));
+    }
+
+    given()
+      .when()
+      .get("/api/trades/perTradeKeyUser")
+      .then()
+      .statusCode(200)
+      .body("size()", is(2));
+
+    // One key per trade
+    given()
+      .contentType(ContentType.JSON)
+      .header("Idempotency-Keys", "trade-other")
+      .body(batch)
+      .when()
+      .post("/api/trades/batch")
+      .then()
+      .statusCode(400);
+  }
+
+  @Test
+  void shouldGetTradeSummary() {
+    for (int amount : new int[]{100, 300}) {
+      given()
+        .contentType(ContentType.JSON)
+        .body(new Trade("summaryUser", BigDecimal.valueOf(amount), "CHF", BigDecimal.valueOf(0.9)))
+        .when()
+        .post("/api/trades")
+        .then()
+        .statusCode(204);
+    }
+
+    given()
+      .when()
+      .get("/api/trades/summaryUser/summary")
+      .then()
+      .statusCode(200)
+      .body("userId", is("summaryUser"))
+      .body("currencies.size()", is(1))
+      .body("currencies[0].currency", is("CHF"))
+      .body("currencies[0].usdAmount", is(400))
+      .body("currencies[0].convertedAmount", is(360.0f))
+      .body("currencies[0].tradeCount", is(2))
+      .body("currencies[0].averageRate", is(0.9f));
+  }
+
+  @Test
+  void shouldReportTradeCountersInLiveness() {
+    given()
+      .contentType(ContentType.JSON)
+      .body(new Trade("liveUser", BigDecimal.valueOf(10), "EUR", BigDecimal.valueOf(0.92)))
+      .when()
+      .post("/api/trades")
+      .then()
+      .statusCode(204);
+
+    given()
+      .when()
+      .get("/q/health/live")
+      .then()
+      .statusCode(200)
+      .body("checks.find { it.name == 'Check trades' }.status", is("UP"))
+      .body("checks.find { it.name == 'Check trades' }.data.storedTrades", greaterThan(0))
+      .body("checks.find { it.name == 'Check trades' }.data.lastTradeTime", notNullValue());
+  }
 }
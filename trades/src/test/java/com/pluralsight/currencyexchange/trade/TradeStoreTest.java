@@ -0,0 +1,183 @@
+package com.pluralsight.currencyexchange.trade;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class TradeStoreTest {
+
+  private static final int WRITERS = 8;
+  private static final int TRADES_PER_WRITER = 50_000;
+  private static final int USERS = 4;
+
+  @Test
+  void shouldKeepTradesInExecutionOrder() {
+    TradeStore store = new TradeStore();
+    for (int i = 0; i < 100; i++) {
+      store.append(trade("user1", i));
+    }
+
+    List<Trade> trades = store.trades("user1");
+    assertEquals(100, trades.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(BigDecimal.valueOf(i), trades.get(i).usdAmount());
+    }
+    assertEquals(List.of(), store.trades("unknown"));
+  }
+
+  @Test
+  void shouldAppendBatchesAcrossUsers() {
+    TradeStore store = new TradeStore();
+    store.append(trade("user1", 0));
+    List<Trade> batch = new ArrayList<>();
+    for (int i = 1; i <= 100; i++) {
+      batch.add(trade("user" + (i % 2 + 1), i));
+    }
+    store.appendAll(batch);
+
+    assertEquals(51, store.size("user1"));
+    assertEquals(50, store.size("user2"));
+    assertEquals(List.of(0, 2, 4), amounts(store.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, null, 3, false)));
+    assertEquals(List.of(99, 97), amounts(store.page("user2", Long.MIN_VALUE, Long.MAX_VALUE, null, 2, true)));
+  }
+
+  @Test
+  void shouldMaintainTotalsPerCurrency() {
+    TradeStore store = new TradeStore();
+    store.append(new Trade("user1", null, new BigDecimal("100"), "EUR", new BigDecimal("90.00"), new BigDecimal("0.90"), "COMPLETED"));
+    store.append(new Trade("user1", null, new BigDecimal("300"), "EUR", new BigDecimal("282.00"), new BigDecimal("0.94"), "COMPLETED"));
+    store.appendAll(List.of(new Trade("user1", null, new BigDecimal("10"), "JPY", new BigDecimal("1500.0"), new BigDecimal("150.0"), "COMPLETED")));
+
+    TradeSummary summary = store.summary("user1");
+    assertEquals(2, summary.currencies().size());
+    TradeSummary.CurrencyTotals eur = summary.currencies().get(0);
+    assertEquals("EUR", eur.currency());
+    assertEquals(new BigDecimal("400"), eur.usdAmount());
+    assertEquals(new BigDecimal("372.00"), eur.convertedAmount());
+    assertEquals(2, eur.tradeCount());
+    assertEquals(new BigDecimal("0.930000"), eur.averageRate());
+    assertEquals("JPY", summary.currencies().get(1).currency());
+
+    assertEquals(List.of(), store.summary("unknown").currencies());
+  }
+
+  @Test
+  void shouldPageForwardAndBackward() {
+    TradeStore store = new TradeStore();
+    for (int i = 0; i < 10; i++) {
+      store.append(trade("user1", i));
+    }
+
+    TradePage page = store.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, null, 4, false);
+    assertEquals(List.of(0, 1, 2, 3), amounts(page));
+    page = store.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, page.nextCursor(), 4, false);
+    assertEquals(List.of(4, 5, 6, 7), amounts(page));
+    page = store.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, page.nextCursor(), 4, false);
+    assertEquals(List.of(8, 9), amounts(page));
+    assertNull(page.nextCursor());
+
+    page = store.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, null, 4, true);
+    assertEquals(List.of(9, 8, 7, 6), amounts(page));
+    page = store.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, page.nextCursor(), 4, true);
+    assertEquals(List.of(5, 4, 3, 2), amounts(page));
+    page = store.page("user1", Long.MIN_VALUE, Long.MAX_VALUE, page.nextCursor(), 4, true);
+    assertEquals(List.of(1, 0), amounts(page));
+    assertNull(page.nextCursor());
+
+    assertEquals(List.of(), store.page("unknown", Long.MIN_VALUE, Long.MAX_VALUE, null, 4, false).trades());
+  }
+
+  @Test
+  void shouldFilterByTimeRange() {
+    TradeStore store = new TradeStore();
+    LocalDateTime start = LocalDateTime.of(2025, 1, 31, 12, 0);
+    for (int i = 0; i < 10; i++) {
+      store.append(new Trade("user1", start.plusMinutes(i), BigDecimal.valueOf(i), "EUR", null, BigDecimal.ONE, "COMPLETED"));
+    }
+    long from = TradeStore.toEpochMillis(start.plusMinutes(2));
+    long to = TradeStore.toEpochMillis(start.plusMinutes(6));
+
+    TradePage page = store.page("user1", from, to, null, 3, false);
+    assertEquals(List.of(2, 3, 4), amounts(page));
+    page = store.page("user1", from, to, page.nextCursor(), 3, false);
+    assertEquals(List.of(5, 6), amounts(page));
+    assertNull(page.nextCursor());
+
+    page = store.page("user1", from, to, null, 10, true);
+    assertEquals(List.of(6, 5, 4, 3, 2), amounts(page));
+  }
+
+  @Test
+  void shouldNotLoseTradesUnderConcurrentWrites() throws Exception {
+    TradeStore store = new TradeStore();
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicBoolean writing = new AtomicBoolean(true);
+
+    List<Future<?>> writers = new ArrayList<>();
+    for (int writer = 0; writer < WRITERS; writer++) {
+      int writerId = writer;
+      writers.add(executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < TRADES_PER_WRITER; i++) {
+          // Every writer hits every user, so the writers contend on the same logs
+          store.append(trade("user" + (i % USERS), writerId * TRADES_PER_WRITER + i));
+        }
+        return null;
+      }));
+    }
+    // Readers must only ever see complete snapshots, growing over time
+    Future<?> reader = executor.submit(() -> {
+      start.await();
+      int previousSize = 0;
+      while (writing.get()) {
+        List<Trade> trades = store.trades("user0");
+        assertTrue(trades.size() >= previousSize);
+        trades.forEach(trade -> assertNotNull(trade));
+        previousSize = trades.size();
+      }
+      return null;
+    });
+
+    start.countDown();
+    for (Future<?> writer : writers) {
+      writer.get(1, TimeUnit.MINUTES);
+    }
+    writing.set(false);
+    reader.get(1, TimeUnit.MINUTES);
+    executor.shutdown();
+
+    Set<BigDecimal> amounts = new HashSet<>();
+    for (int user = 0; user < USERS; user++) {
+      assertEquals(WRITERS * TRADES_PER_WRITER / USERS, store.size("user" + user));
+      for (Trade trade : store.trades("user" + user)) {
+        assertEquals("user" + user, trade.userId());
+        amounts.add(trade.usdAmount());
+      }
+    }
+    assertEquals(WRITERS * TRADES_PER_WRITER, amounts.size());
+  }
+
+  private static List<Integer> amounts(TradePage page) {
+    return page.trades().stream().map(trade -> trade.usdAmount().intValue()).toList();
+  }
+
+  private static Trade trade(String userId, int amount) {
+    return new Trade(userId, BigDecimal.valueOf(amount), "EUR", BigDecimal.ONE);
+  }
+}